@@ -1,57 +1,294 @@
 import java.io.UnsupportedEncodingException;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Simple class that tries to find a partial collision (currently the first 24 bits) of a digested
- * message digested with a hard coded algorithm (currently SHA-256) using brute force.
+ * Simple class that tries to find a partial collision (by default the first 24 bits) of a digested
+ * message digested with a given algorithm (by default SHA-256) using brute force.
+ *
+ * The bits to match are given as a mask over the first 8 bytes of the digest (the first byte the most
+ * significant), so any bits among them can be matched, and a digest is compared with a single masked
+ * <code>long</code> compare.
+ *
+ * SHA-256 can also be computed with <code>SHA256SingleBlock</code>, which reuses the work on the digits that did not
+ * change since the last trial and only computes the first 8 bytes of the digest. It is a little faster than the
+ * SHA-256 of the JDK in Java, but the JVM replaces that with the SHA instructions of the CPU where there are any,
+ * which is several times faster again, so <code>MessageDigest</code> stays the default. Every partial collision
+ * found is digested again with <code>MessageDigest</code> and checked before it is reported.
  *
  */
 public class SHA256PartialCollisioner {
+    //the counters a thread takes at a time in the parallel search
+    private static final long BLOCK = 1 << 16;
+
+    /**
+     * The decimal ASCII digits of a counter, kept in a reusable buffer and incremented in place, so that a trial
+     * allocates nothing. The digits are right aligned in <code>digits</code>, from <code>offset</code> to the end.
+     */
+    private static class DecimalCounter {
+        //enough for Long.MAX_VALUE
+        final byte[] digits = new byte[19];
+        int offset;
+        long value;
+
+        DecimalCounter(long value) {
+            set(value);
+        }
+
+        void set(long value) {
+            this.value = value;
+            this.offset = this.digits.length;
+            do {
+                this.digits[--this.offset] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while(value > 0);
+        }
 
-	private MessageDigest messageDigest;
+        void increment() {
+            this.value++;
+            int i = this.digits.length - 1;
+            while(i >= this.offset && this.digits[i] == '9')
+                this.digits[i--] = '0';
+            if(i < this.offset)
+                this.digits[this.offset = i] = '1';
+            else
+                this.digits[i]++;
+        }
+
+        int length() {
+            return this.digits.length - this.offset;
+        }
+    }
+
+    //the first 8 bytes of the digest of a counter, every thread has its own
+    private interface CounterDigest {
+        long first8Bytes(DecimalCounter counter);
+    }
+
+    private MessageDigest messageDigest;
     private final String textEncoding = "UTF-8";
-    private final String digestAlgorithm = "SHA-256";
-    
+    private final String digestAlgorithm;
+    private final boolean singleBlock;
+
     /**
      * Creates an instance of this class with the hard coded configurations.
      */
     public SHA256PartialCollisioner() {
+        this("SHA-256");
+    }
+
+    /**
+     * Creates an instance of this class that digests with the given algorithm, exits if it is not found or its
+     * digests are shorter than 8 bytes.
+     *
+     * @param digestAlgorithm the name of the <code>MessageDigest</code> algorithm
+     */
+    public SHA256PartialCollisioner(String digestAlgorithm) {
+        this(digestAlgorithm, false);
+    }
+
+    /**
+     * Creates an instance of this class that digests with the given algorithm, exits if it is not found or its
+     * digests are shorter than 8 bytes.
+     *
+     * @param digestAlgorithm the name of the <code>MessageDigest</code> algorithm
+     * @param singleBlock whether SHA-256 is computed with <code>SHA256SingleBlock</code> instead of
+     * <code>MessageDigest</code> (the other algorithms always are with <code>MessageDigest</code>)
+     */
+    public SHA256PartialCollisioner(String digestAlgorithm, boolean singleBlock) {
+        this.digestAlgorithm = digestAlgorithm;
+        this.singleBlock = singleBlock && (digestAlgorithm.equalsIgnoreCase("SHA-256") || digestAlgorithm.equalsIgnoreCase("SHA256"));
         try {
             this.messageDigest = MessageDigest.getInstance(digestAlgorithm);
         } catch (NoSuchAlgorithmException e) {
             System.out.println("The given algorithm: " + digestAlgorithm + ", could not be found!");
             System.exit(0);
         }
+        if(this.messageDigest.getDigestLength() < 8) {
+            System.out.println("The given algorithm: " + digestAlgorithm + ", has digests shorter than 8 bytes!");
+            System.exit(0);
+        }
     }
-    
-    
+
+    /**
+     * @param bits the number of bits (1-64)
+     * @return the mask of the first given number of bits of a digest
+     */
+    public static long prefixMask(int bits) {
+        if(bits < 1 || bits > 64)
+            throw new IllegalArgumentException("Expected 1 to 64 bits, received: " + bits);
+        return -1L << (64 - bits);
+    }
+
+    //the first 8 bytes of a digest, the first byte the most significant
+    private static long first8Bytes(byte[] digest) {
+        long value = 0;
+        for(int i = 0; i < 8; i++)
+            value = value << 8 | (digest[i] & 0xFF);
+        return value;
+    }
+
     /**
      * Tries to find a partial collision for the first 24 bits of a digest (hash value) of a given
      * message using the digest algorithm of this instance (SHA-256). It tries to do so by
      * digesting (with the same algorithm) a counter that keeps increasing until such collision
      * is found.
-     * 
+     *
      * @param msg the message to be digested and brute-force attacked (for the 24 first bits)
      */
     public void bruteForce24FirstBits(String msg) {
+        bruteForce(msg, prefixMask(24));
+    }
+
+    /**
+     * Does the same search as <code>bruteForce24FirstBits</code>, for the bits of the given mask.
+     *
+     * @param msg the message to be digested and brute-force attacked
+     * @param mask the bits to match, over the first 8 bytes of the digest
+     */
+    public void bruteForce(String msg, long mask) {
         byte[] msgDigest = generateDigest(msg);
-        
-        long counter = 0;
+        long target = first8Bytes(msgDigest) & mask;
+
+        DecimalCounter counter = new DecimalCounter(0);
+        CounterDigest digest = newCounterDigest();
         System.out.println("The brute force attack is about to start. This might take a while!");
         System.out.println("Starting brute force attack!");
         while(true) {
-            byte[] bruteDigest = generateDigest(Long.toString(counter));
-            
-            //compare first 24 bits (i.e. 3 first bytes)
-            if(msgDigest[0] == bruteDigest[0] && msgDigest[1] == bruteDigest[1] && msgDigest[2] == bruteDigest[2]) {
-                printResult(counter + 1, msg, msgDigest, bruteDigest);
+            if((digest.first8Bytes(counter) & mask) == target) {
+                printResult(counter.value + 1, mask, msg, msgDigest, verifiedDigest(counter.value, mask, target));
                 break;
             }
-            counter++;
+            counter.increment();
         }
+        printTrials(mask, counter.value + 1, 1);
     }
-    
+
+    /**
+     * Does the same search as <code>bruteForce24FirstBits</code> on the given number of threads, for the first
+     * <code>hits</code> partial collisions. The threads take blocks of counters in increasing order, every thread
+     * with its own digest. Once enough collisions are found, only the counters below the last of them are still
+     * searched, so the result is always the smallest matching counters (and trial counts) that the sequential
+     * search finds.
+     *
+     * @param msg the message to be digested and brute-force attacked (for the 24 first bits)
+     * @param threads the number of threads
+     * @param hits the number of partial collisions to find
+     */
+    public void parallelBruteForce24FirstBits(String msg, int threads, int hits) {
+        parallelBruteForce(msg, prefixMask(24), threads, hits);
+    }
+
+    /**
+     * Does the same search as <code>parallelBruteForce24FirstBits</code>, for the bits of the given mask.
+     *
+     * @param msg the message to be digested and brute-force attacked
+     * @param mask the bits to match, over the first 8 bytes of the digest
+     * @param threads the number of threads
+     * @param hits the number of partial collisions to find
+     */
+    public void parallelBruteForce(String msg, long mask, int threads, int hits) {
+        byte[] msgDigest = generateDigest(msg);
+        long target = first8Bytes(msgDigest) & mask;
+        AtomicLong next = new AtomicLong();
+        TreeSet<Long> found = new TreeSet<>();
+        //the counters at and above the limit are not needed any more
+        AtomicLong limit = new AtomicLong(Long.MAX_VALUE);
+
+        System.out.println("The brute force attack is about to start on " + threads + " threads. This might take a while!");
+        System.out.println("Starting brute force attack!");
+        long startTime = System.currentTimeMillis();
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        List<Future<?>> workers = new ArrayList<>();
+        for(int i = 0; i < threads; i++) {
+            workers.add(executorService.submit(() -> {
+                CounterDigest digest = newCounterDigest();
+                DecimalCounter counter = new DecimalCounter(0);
+                long start;
+                while((start = next.getAndAdd(BLOCK)) < limit.get()) {
+                    for(counter.set(start); counter.value < start + BLOCK && counter.value < limit.get(); counter.increment()) {
+                        if((digest.first8Bytes(counter) & mask) == target) {
+                            synchronized(found) {
+                                found.add(counter.value);
+                                if(found.size() > hits)
+                                    found.pollLast();
+                                if(found.size() == hits)
+                                    limit.set(found.last());
+                            }
+                        }
+                    }
+                }
+            }));
+        }
+        for(Future<?> worker : workers) {
+            try {
+                worker.get();
+            } catch (Exception e) {
+                System.out.println("A search thread failed: " + e);
+                System.exit(0);
+            }
+        }
+        executorService.shutdown();
+
+        long elapsed = System.currentTimeMillis() - startTime;
+        for(long counter : found)
+            printResult(counter + 1, mask, msg, msgDigest, verifiedDigest(counter, mask, target));
+        System.out.println();
+        System.out.println("Searched the first " + (found.last() + 1) + " counters in " + elapsed + " ms on " + threads
+                + (threads == 1 ? " thread." : " threads."));
+        printTrials(mask, found.last() + 1, hits);
+    }
+
+    //SHA256SingleBlock if it was chosen for SHA-256, otherwise a MessageDigest into a reused buffer
+    private CounterDigest newCounterDigest() {
+        if(this.singleBlock) {
+            SHA256SingleBlock sha = new SHA256SingleBlock();
+            return counter -> sha.first8Bytes(counter.digits, counter.offset, counter.length());
+        }
+        MessageDigest digest = newDigest();
+        byte[] output = new byte[digest.getDigestLength()];
+        return counter -> {
+            digest(digest, counter, output);
+            return first8Bytes(output);
+        };
+    }
+
+    //the digest of a partial collision with MessageDigest, checked against the target
+    private byte[] verifiedDigest(long counter, long mask, long target) {
+        byte[] digest = generateDigest(Long.toString(counter));
+        if((first8Bytes(digest) & mask) != target)
+            throw new IllegalStateException("The digest of the counter " + counter + " does not match with MessageDigest");
+        return digest;
+    }
+
+    private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(this.digestAlgorithm);
+        } catch (NoSuchAlgorithmException e) {
+            //the same algorithm was found in the constructor
+            throw new IllegalStateException(e);
+        }
+    }
+
+    //digests the digits of the counter into the given buffer, without allocating
+    private static void digest(MessageDigest digest, DecimalCounter counter, byte[] output) {
+        digest.update(counter.digits, counter.offset, counter.length());
+        try {
+            digest.digest(output, 0, output.length);
+        } catch (DigestException e) {
+            //the buffer has the length of the digest
+            throw new IllegalStateException(e);
+        }
+    }
+
     private byte[] generateDigest(String msg) {
         byte[] msgBytes = null;
         try {
@@ -63,39 +300,117 @@ public class SHA256PartialCollisioner {
         this.messageDigest.update(msgBytes);
         return this.messageDigest.digest();
     }
-    
-    private void printResult(long attempts, String inputText, byte[] inputDigest, byte[] bruteDigest) {
+
+    //"the first n bits" for a prefix mask, otherwise the mask
+    private static String describe(long mask) {
+        int bits = Long.bitCount(mask);
+        if(mask == prefixMask(bits))
+            return "the first " + bits + " bits";
+        return "the " + bits + " bits of mask " + String.format("%016x", mask);
+    }
+
+    //every trial matches n bits with probability 2^-n, so k hits take k * 2^n trials on average
+    private static void printTrials(long mask, long trials, int hits) {
+        int bits = Long.bitCount(mask);
+        double expected = hits * Math.pow(2, bits);
+        System.out.println(String.format("Expected about %d * 2^%d = %.0f trials for %s, needed %d (%.2f times the expected).",
+                hits, bits, expected, describe(mask), trials, trials / expected));
+    }
+
+    private void printResult(long attempts, long mask, String inputText, byte[] inputDigest, byte[] bruteDigest) {
         System.out.println();
-        System.out.println("Found a partial collision in the first 24 bits in the #" + attempts + " trial!");
+        System.out.println("Found a partial collision in " + describe(mask) + " in the #" + attempts + " trial!");
         printDigest(inputText, inputDigest);
         System.out.println("The brute digest (by digesting the counter: " + (attempts - 1) + " using the same digest algorithm) is:");
-        for(int i = 0; i < bruteDigest.length; i++) 
+        for(int i = 0; i < bruteDigest.length; i++)
             System.out.format("%02x", bruteDigest[i] & 0xFF);
         System.out.println();
     }
-    
+
     private void printDigest(String inputText, byte[] digest) {
         System.out.println("Digest for the message \"" + inputText +"\", using " + this.digestAlgorithm + " is:");
         for (int i = 0; i < digest.length; i++)
             System.out.format("%02x", digest[i] & 0xFF);
         System.out.println();
     }
-    
+
     /**
      * Runs the partial collisioner to find a partial collision for the 24 first bits of a digest of
-     * the given message. The digest algorithm is hard coded to SHA-256.
-     * 
-     * @param args args[0] the message to be digested.
+     * the given message. The digest algorithm is SHA-256 unless another is given.
+     *
+     * @param args args[0] the message to be digested. args[1]... (optional): --threads=&lt;n&gt; searches on n
+     * threads, --hits=&lt;k&gt; finds the first k partial collisions (on all cores, unless --threads is given),
+     * --bits=&lt;n&gt; matches the first n bits (1-64), --mask=&lt;hex&gt; matches the bits of the mask over the
+     * first 8 bytes of the digest, --algorithm=&lt;name&gt; digests with the given algorithm (for example MD5, SHA-1),
+     * --single-block computes SHA-256 with <code>SHA256SingleBlock</code> instead of <code>MessageDigest</code>.
      */
     public static void main(String[] args) {
-        if(args.length != 1) {
-            System.out.println("Please enter: <String>");
+        if(args.length < 1) {
+            System.out.println("Please enter: <String> [--threads=<n>] [--hits=<k>] [--bits=<n>] [--mask=<hex>] [--algorithm=<name>] [--single-block]");
             System.out.println("The string must be surrounded by \"\", for example: \"No way\"");
             System.exit(0);
         }
-        
-        SHA256PartialCollisioner collisioner = new SHA256PartialCollisioner();
-        collisioner.bruteForce24FirstBits(args[0]);    
+
+        int threads = 0;
+        int hits = 1;
+        long mask = prefixMask(24);
+        String algorithm = "SHA-256";
+        boolean singleBlock = false;
+        for(int i = 1; i < args.length; i++) {
+            String[] option = args[i].split("=", 2);
+            if(option.length == 2 && option[0].equals("--threads")) {
+                threads = parseInt(option);
+            } else if(option.length == 2 && option[0].equals("--hits")) {
+                hits = parseInt(option);
+            } else if(option.length == 2 && option[0].equals("--bits")) {
+                int bits = parseInt(option);
+                if(bits < 1 || bits > 64) {
+                    System.out.println("Expected 1 to 64 bits");
+                    System.exit(0);
+                }
+                mask = prefixMask(bits);
+            } else if(option.length == 2 && option[0].equals("--mask")) {
+                try {
+                    mask = Long.parseUnsignedLong(option[1].startsWith("0x") ? option[1].substring(2) : option[1], 16);
+                } catch (NumberFormatException e) {
+                    System.out.println("Expected --mask=<hex> with 1 to 16 hex digits, received: " + args[i]);
+                    System.exit(0);
+                }
+                if(mask == 0) {
+                    System.out.println("Expected a mask of at least one bit");
+                    System.exit(0);
+                }
+            } else if(option.length == 2 && option[0].equals("--algorithm")) {
+                algorithm = option[1];
+            } else if(args[i].equals("--single-block")) {
+                singleBlock = true;
+            } else {
+                System.out.println("Parameter " + args[i] + " is not supported.");
+                System.out.println("Currently supported parameters are: --threads, --hits, --bits, --mask, --algorithm, --single-block");
+                System.exit(0);
+            }
+        }
+        if(threads < 0 || hits < 1) {
+            System.out.println("Expected at least 1 thread and 1 hit");
+            System.exit(0);
+        }
+
+        SHA256PartialCollisioner collisioner = new SHA256PartialCollisioner(algorithm, singleBlock);
+        if(threads == 0 && hits == 1)
+            collisioner.bruteForce(args[0], mask);
+        else
+            collisioner.parallelBruteForce(args[0], mask, threads == 0 ? Runtime.getRuntime().availableProcessors() : threads, hits);
+    }
+
+    //the number of an option such as --threads=<n>, a bad number exits like any other bad parameter
+    private static int parseInt(String[] option) {
+        try {
+            return Integer.parseInt(option[1]);
+        } catch (NumberFormatException e) {
+            System.out.println("Expected " + option[0] + "=<n> with a whole number n, received: " + option[0] + "=" + option[1]);
+            System.exit(0);
+            return 0;
+        }
     }
 
 }
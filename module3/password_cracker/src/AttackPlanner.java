@@ -0,0 +1,259 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntSupplier;
+import java.util.function.ToIntBiFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Runs the strategies of <code>PasswordCrack</code> (the mangle strategies and brute force) within a wall-clock
+ * budget instead of one after the other. The strategies are cut into small slices; every strategy first gets a
+ * sample slice to measure its cost (candidates per second) and yield (cracks per million candidates), and after
+ * that every core keeps picking the strategy with the most expected cracks per second, so the plan changes as the
+ * measurements come in (and as the easy passwords of a strategy run out).
+ *
+ * @author Antonio
+ *
+ */
+class AttackPlanner {
+    //crypts per slice, divided by the number of salts to get the candidates per slice
+    private static final long SLICE_CRYPTS = 1 << 18;
+    private static final long MIN_SLICE_CANDIDATES = 64;
+    private static final int MAX_BRUTE_LENGTH = 8;
+
+    private static class BudgetExceeded extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    private abstract class Arm {
+        final String name;
+        final LongAdder candidates = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAdder cracks = new LongAdder();
+        final LongAdder slices = new LongAdder();
+        //written by the worker that runs out of slices and by the planner, read by every worker
+        volatile boolean started = false;
+        volatile boolean exhausted = false;
+
+        Arm(String name) {
+            this.name = name;
+        }
+
+        //expected cracks per second, an unmeasured strategy goes first (but only on one core)
+        double score() {
+            long candidates = this.candidates.sum();
+            long nanos = this.nanos.sum();
+            if(this.slices.sum() == 0 || nanos == 0)
+                return this.started ? 0 : Double.MAX_VALUE;
+            double speed = candidates * 1e9 / nanos;
+            double yield = (this.cracks.sum() + 1.0) / (candidates + sliceCandidates());
+            return speed * yield;
+        }
+
+        /**
+         * Takes the next slice of this strategy and runs it, unless the strategy is done.
+         * @return <code>false</code> if the strategy has nothing left
+         */
+        abstract boolean runSlice(Tester tester);
+    }
+
+    private class DictionaryArm extends Arm {
+        private final int strategy;
+        private int word = 0;
+
+        DictionaryArm(int strategy) {
+            super(PasswordCrack.STRATEGY_NAMES[strategy]);
+            this.strategy = strategy;
+        }
+
+        @Override
+        boolean runSlice(Tester tester) {
+            int from;
+            int to;
+            synchronized (this) {
+                if(this.word >= dict.size()) {
+                    this.exhausted = true;
+                    return false;
+                }
+                long words = Math.max(1, sliceCandidates() / PasswordCrack.CANDIDATES_PER_WORD[this.strategy]);
+                from = this.word;
+                to = (int) Math.min(dict.size(), from + words);
+                this.word = to;
+            }
+            PasswordCrack.runStrategy(this.strategy, dict, from, to, 1, 12, tester, stats);
+            return true;
+        }
+    }
+
+    private class BruteArm extends Arm {
+        private int length = 1;
+        private long index = 0;
+
+        BruteArm() {
+            super("brute");
+        }
+
+        @Override
+        boolean runSlice(Tester tester) {
+            int length;
+            long from;
+            long to;
+            synchronized (this) {
+                while(this.length <= MAX_BRUTE_LENGTH && this.index >= pow(PasswordCrack.BRUTE_CHARS, this.length)) {
+                    this.length++;
+                    this.index = 0;
+                }
+                if(this.length > MAX_BRUTE_LENGTH) {
+                    this.exhausted = true;
+                    return false;
+                }
+                length = this.length;
+                from = this.index;
+                to = Math.min(pow(PasswordCrack.BRUTE_CHARS, length), from + sliceCandidates());
+                this.index = to;
+            }
+            char[] attempt = new char[length];
+            for(long i = from; i < to; i++) {
+                PasswordCrack.bruteCandidate(i, attempt);
+                tester.applyAsInt(new String(attempt));
+            }
+            return true;
+        }
+    }
+
+    //counts the candidates and cracks of the arm it tests for, and enforces the deadline
+    private class Tester implements ToIntFunction<String> {
+        private final Arm arm;
+        private long candidates = 0;
+        private long cracks = 0;
+
+        Tester(Arm arm) {
+            this.arm = arm;
+        }
+
+        @Override
+        public int applyAsInt(String word) {
+            if((this.candidates & 0xff) == 0 && System.nanoTime() > deadline)
+                throw new BudgetExceeded();
+            this.candidates++;
+            int cracks = tester.applyAsInt(word, this.arm.name);
+            this.cracks += cracks;
+            return cracks;
+        }
+    }
+
+    private final List<String> dict;
+    private final ToIntBiFunction<String, String> tester;
+    private final BooleanSupplier done;
+    private final IntSupplier salts;
+    private final int threads;
+    private final RuleStats stats;
+    private final List<Arm> arms = new ArrayList<>();
+    private volatile long deadline;
+
+    /**
+     * Creates the planner.
+     * @param dict the dictionary
+     * @param tester tests a candidate (with the name of its strategy) and returns the number of cracked users
+     * @param done tells if there is nothing left to crack
+     * @param salts the number of salts left, a candidate costs one crypt per salt
+     * @param threads the number of threads (cores) to use
+     * @param stats the rule statistics to count the candidates in, or <code>null</code>
+     */
+    AttackPlanner(List<String> dict, ToIntBiFunction<String, String> tester, BooleanSupplier done, IntSupplier salts,
+            int threads, RuleStats stats) {
+        this.dict = dict;
+        this.tester = tester;
+        this.done = done;
+        this.salts = salts;
+        this.threads = threads;
+        this.stats = stats;
+        for(int strategy = 0; strategy < PasswordCrack.STRATEGIES; strategy++)
+            this.arms.add(new DictionaryArm(strategy));
+        this.arms.add(new BruteArm());
+    }
+
+    private long sliceCandidates() {
+        return Math.max(MIN_SLICE_CANDIDATES, SLICE_CRYPTS / Math.max(1, this.salts.getAsInt()));
+    }
+
+    private static long pow(long base, int exp) {
+        long result = 1;
+        for(int i = 0; i < exp; i++)
+            result *= base;
+        return result;
+    }
+
+    /**
+     * Cracks until the budget is used up, everything is cracked or every strategy is done, and then prints
+     * what every strategy cost and yielded.
+     * @param budgetMillis the wall-clock budget
+     */
+    void run(long budgetMillis) {
+        this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        ExecutorService executorService = Executors.newFixedThreadPool(this.threads);
+        for(int i = 0; i < this.threads; i++)
+            executorService.execute(this::crack);
+        executorService.shutdown();
+        try {
+            executorService.awaitTermination(budgetMillis + 60000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            System.out.println("Got interrupted when trying to wait for all threads to finish...");
+        }
+        printPlan();
+    }
+
+    private void crack() {
+        try {
+            while(System.nanoTime() < this.deadline && !this.done.getAsBoolean()) {
+                Arm arm = pickArm();
+                if(arm == null)
+                    return;
+                Tester tester = new Tester(arm);
+                long start = System.nanoTime();
+                try {
+                    arm.runSlice(tester);
+                } finally {
+                    arm.nanos.add(System.nanoTime() - start);
+                    arm.candidates.add(tester.candidates);
+                    arm.cracks.add(tester.cracks);
+                    arm.slices.increment();
+                }
+            }
+        } catch (BudgetExceeded e) {
+            return;
+        }
+    }
+
+    private synchronized Arm pickArm() {
+        Arm best = null;
+        double bestScore = -1;
+        for(Arm arm : this.arms) {
+            if(arm.exhausted)
+                continue;
+            double score = arm.score();
+            if(score > bestScore) {
+                best = arm;
+                bestScore = score;
+            }
+        }
+        if(best != null)
+            best.started = true;
+        return best;
+    }
+
+    private void printPlan() {
+        System.out.println("Strategy                 candidates   candidates/s   cracks   cracks/M candidates");
+        for(Arm arm : this.arms) {
+            long candidates = arm.candidates.sum();
+            double seconds = arm.nanos.sum() / 1e9;
+            System.out.format("%-24s %10d %14.0f %8d %21.3f%n", arm.name, candidates,
+                    seconds == 0 ? 0 : candidates / seconds, arm.cracks.sum(),
+                    candidates == 0 ? 0 : arm.cracks.sum() * 1e6 / candidates);
+        }
+    }
+}
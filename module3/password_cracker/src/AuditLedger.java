@@ -0,0 +1,212 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers, per full encrypted password data, which work has already been run against it without cracking it,
+ * so that a rerun (the weekly audit) only gives an unchanged hash the new work. A changed password has new
+ * encrypted password data, and gets everything again.
+ *
+ * The work is counted in units: an attack (a mangle strategy, case permutations, ...) including the version of
+ * its rules and parameters, over a chunk of the dictionary (see <code>chunks</code>), identified by a 64-bit
+ * fingerprint. Brute force is counted as the longest length that has been exhausted. The ledger file is
+ * rewritten (atomically) when saved:
+ *
+ * <pre>
+ * S &lt;set id&gt; &lt;unit&gt;,&lt;unit&gt;,... (hex, sorted)
+ * H &lt;encrypted password data&gt; &lt;set id, or - for no units&gt; &lt;exhausted brute force length&gt;
+ * </pre>
+ *
+ * Hashes that were audited together have done the same units, so the unit sets are shared, in the file as
+ * well as in memory.
+ *
+ * @author Antonio
+ *
+ */
+class AuditLedger {
+    //a chunk ends after a word whose hash is 0 modulo this, so chunks are this many words on average
+    static final int CHUNK_WORDS = 256;
+    private static final long[] NO_UNITS = new long[0];
+
+    private static class Record {
+        long[] units = NO_UNITS;
+        int bruteLength = 0;
+    }
+
+    private final Path path;
+    private final Map<String, Record> records = new HashMap<>();
+
+    /**
+     * Opens the given ledger, an empty one if the file does not exist.
+     * @param ledgerFile the path to the ledger file
+     * @throws IOException if the ledger file could not be read or is malformed
+     */
+    AuditLedger(String ledgerFile) throws IOException {
+        this.path = Paths.get(ledgerFile);
+        if(!Files.exists(this.path))
+            return;
+        Map<String, long[]> sets = new HashMap<>();
+        try(BufferedReader reader = Files.newBufferedReader(this.path, StandardCharsets.UTF_8)) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                String[] parts = line.split(" ");
+                if(parts[0].equals("S") && parts.length == 3) {
+                    String[] hex = parts[2].split(",");
+                    long[] units = new long[hex.length];
+                    for(int i = 0; i < hex.length; i++)
+                        units[i] = Long.parseUnsignedLong(hex[i], 16);
+                    Arrays.sort(units);
+                    sets.put(parts[1], units);
+                } else if(parts[0].equals("H") && parts.length == 4 && sets.containsKey(parts[2])) {
+                    Record record = new Record();
+                    record.units = sets.get(parts[2]);
+                    record.bruteLength = Integer.parseInt(parts[3]);
+                    this.records.put(parts[1], record);
+                } else if(parts[0].equals("H") && parts.length == 4 && parts[2].equals("-")) {
+                    Record record = new Record();
+                    record.bruteLength = Integer.parseInt(parts[3]);
+                    this.records.put(parts[1], record);
+                } else {
+                    throw new IOException("Malformed ledger line: " + line);
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed ledger: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Splits the dictionary into chunks by content: a chunk ends after every word whose hash is 0 modulo
+     * <code>CHUNK_WORDS</code>. Adding or removing a word thus only changes the chunk it is in, and all the other
+     * chunks keep their fingerprints.
+     * @param dict the dictionary
+     * @return the chunks, as <code>{from, to}</code>
+     */
+    static List<int[]> chunks(List<String> dict) {
+        List<int[]> chunks = new ArrayList<>();
+        int from = 0;
+        for(int i = 0; i < dict.size(); i++) {
+            if(Long.remainderUnsigned(fingerprint(0, dict.get(i)), CHUNK_WORDS) == 0 || i == dict.size() - 1) {
+                chunks.add(new int[] {from, i + 1});
+                from = i + 1;
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * Makes the unit of an attack over a chunk of the dictionary.
+     * @param attack the attack, including the version of its rules and parameters
+     * @param dict the dictionary
+     * @param from the first word of the chunk (inclusive)
+     * @param to the last word of the chunk (exclusive)
+     * @return the unit
+     */
+    static long unit(String attack, List<String> dict, int from, int to) {
+        long fingerprint = fingerprint(0, attack);
+        for(int i = from; i < to; i++)
+            fingerprint = fingerprint(fingerprint, dict.get(i));
+        return fingerprint;
+    }
+
+    //FNV-1a, continued from the given fingerprint (0 starts a new one), with a separator after the string
+    static long fingerprint(long fingerprint, String s) {
+        long hash = fingerprint == 0 ? 0xcbf29ce484222325L : fingerprint;
+        for(int i = 0; i < s.length(); i++) {
+            hash ^= s.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= 0xffff;
+        hash *= 0x100000001b3L;
+        return hash;
+    }
+
+    synchronized boolean isDone(String encryptedPasswordData, long unit) {
+        Record record = this.records.get(encryptedPasswordData);
+        return record != null && Arrays.binarySearch(record.units, unit) >= 0;
+    }
+
+    synchronized int bruteLength(String encryptedPasswordData) {
+        Record record = this.records.get(encryptedPasswordData);
+        return record == null ? 0 : record.bruteLength;
+    }
+
+    /**
+     * Records that the given unit has been run against the given users.
+     * @param users the users
+     * @param unit the unit
+     */
+    synchronized void done(List<User> users, long unit) {
+        //users that had the same units before share the same units after
+        Map<long[], long[]> next = new IdentityHashMap<>();
+        for(User user : users) {
+            Record record = this.records.computeIfAbsent(user.encryptedPasswordData, hash -> new Record());
+            record.units = next.computeIfAbsent(record.units, units -> {
+                int i = Arrays.binarySearch(units, unit);
+                if(i >= 0)
+                    return units;
+                i = -i - 1;
+                long[] added = new long[units.length + 1];
+                System.arraycopy(units, 0, added, 0, i);
+                added[i] = unit;
+                System.arraycopy(units, i, added, i + 1, units.length - i);
+                return added;
+            });
+        }
+    }
+
+    /**
+     * Records that brute force has exhausted the given length for the given users.
+     * @param users the users
+     * @param length the length
+     */
+    synchronized void bruteDone(List<User> users, int length) {
+        for(User user : users) {
+            Record record = this.records.computeIfAbsent(user.encryptedPasswordData, hash -> new Record());
+            record.bruteLength = Math.max(record.bruteLength, length);
+        }
+    }
+
+    /**
+     * Rewrites the ledger file, a crash while saving leaves the old one.
+     * @throws IOException if the ledger could not be written
+     */
+    synchronized void save() throws IOException {
+        Path temp = this.path.resolveSibling(this.path.getFileName() + ".tmp");
+        Map<long[], String> ids = new IdentityHashMap<>();
+        Map<String, String> idsByUnits = new HashMap<>();
+        try(PrintWriter out = new PrintWriter(Files.newBufferedWriter(temp, StandardCharsets.UTF_8))) {
+            for(Map.Entry<String, Record> entry : this.records.entrySet()) {
+                long[] units = entry.getValue().units;
+                String id = units.length == 0 ? "-" : ids.get(units);
+                if(id == null) {
+                    StringBuilder sb = new StringBuilder();
+                    for(long unit : units)
+                        sb.append(sb.length() == 0 ? "" : ",").append(Long.toHexString(unit));
+                    id = idsByUnits.get(sb.toString());
+                    if(id == null) {
+                        id = Integer.toString(idsByUnits.size());
+                        idsByUnits.put(sb.toString(), id);
+                        out.println("S " + id + " " + sb);
+                    }
+                    ids.put(units, id);
+                }
+                out.println("H " + entry.getKey() + " " + id + " " + entry.getValue().bruteLength);
+            }
+            if(out.checkError())
+                throw new IOException("Could not write " + temp);
+        }
+        Files.move(temp, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
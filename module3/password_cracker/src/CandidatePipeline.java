@@ -0,0 +1,213 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands candidates from generator threads (the mangle strategies) to crypt worker threads in batches, so that
+ * a slow generator does not leave a core idle and every stage can get its own number of threads.
+ *
+ * Every generator thread fills its own batch of packed keys (the first 8 chars, as crypt sees them) and the
+ * words they came from, and hands it over through a bounded ring of full batches. The crypt workers take whole
+ * batches, set up the key schedule of every key in place and give the empty batch back through a ring of free
+ * batches. All batches are allocated up front, so once running nothing is allocated to move a candidate.
+ * Generators wait when all batches are full, so the generators never get more than the ring ahead of the crypt
+ * workers.
+ *
+ * @author Antonio
+ *
+ */
+class CandidatePipeline {
+    static final int BATCH_SIZE = 1024;
+    private static final int KEY_LENGTH = 8;
+
+    /**
+     * Tests a candidate whose key schedule is set up.
+     */
+    interface Tester {
+        /**
+         * @param schedule the key schedule of the candidate
+         * @param block a buffer for the crypted block
+         * @param word the candidate
+         * @param strategy the strategy that made the candidate
+         * @return the number of cracked users
+         */
+        int test(int[] schedule, int[] block, String word, String strategy);
+    }
+
+    private static class Batch {
+        final long[] keys = new long[BATCH_SIZE];
+        final String[] words = new String[BATCH_SIZE];
+        String strategy;
+        int size;
+    }
+
+    //a bounded lock-free queue of batches for many producers and consumers (D. Vyukov's)
+    private static class Ring {
+        private final Batch[] slots;
+        private final AtomicLongArray sequences;
+        private final int mask;
+        private final AtomicLong head = new AtomicLong();
+        private final AtomicLong tail = new AtomicLong();
+
+        Ring(int capacity) {
+            int size = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+            this.slots = new Batch[size];
+            this.sequences = new AtomicLongArray(size);
+            this.mask = size - 1;
+            for(int i = 0; i < size; i++)
+                this.sequences.set(i, i);
+        }
+
+        boolean offer(Batch batch) {
+            long position = this.tail.get();
+            while(true) {
+                int slot = (int) position & this.mask;
+                long difference = this.sequences.get(slot) - position;
+                if(difference == 0 && this.tail.compareAndSet(position, position + 1)) {
+                    this.slots[slot] = batch;
+                    this.sequences.lazySet(slot, position + 1);
+                    return true;
+                }
+                if(difference < 0)
+                    return false;
+                position = this.tail.get();
+            }
+        }
+
+        Batch poll() {
+            long position = this.head.get();
+            while(true) {
+                int slot = (int) position & this.mask;
+                long difference = this.sequences.get(slot) - (position + 1);
+                if(difference == 0 && this.head.compareAndSet(position, position + 1)) {
+                    Batch batch = this.slots[slot];
+                    this.slots[slot] = null;
+                    this.sequences.lazySet(slot, position + this.mask + 1);
+                    return batch;
+                }
+                if(difference < 0)
+                    return null;
+                position = this.head.get();
+            }
+        }
+    }
+
+    private final Ring free;
+    private final Ring full;
+    private final Tester tester;
+    private final Thread[] workers;
+    private final ThreadLocal<Batch> current = new ThreadLocal<>();
+    private volatile boolean closed = false;
+
+    /**
+     * Creates the pipeline and starts its crypt workers.
+     * @param crypters the number of crypt worker threads
+     * @param batches the number of batches, at least one per generator thread and crypt worker
+     * @param tester tests the candidates
+     */
+    CandidatePipeline(int crypters, int batches, Tester tester) {
+        this.tester = tester;
+        this.free = new Ring(batches);
+        this.full = new Ring(batches);
+        for(int i = 0; i < batches; i++)
+            this.free.offer(new Batch());
+        this.workers = new Thread[crypters];
+        for(int i = 0; i < crypters; i++) {
+            this.workers[i] = new Thread(this::crypt, "crypter-" + i);
+            this.workers[i].setDaemon(true);
+            this.workers[i].start();
+        }
+    }
+
+    /**
+     * Adds a candidate to the calling generator thread's batch, waits if all batches are full.
+     * @param word the candidate
+     * @param strategy the strategy that made it
+     * @return always 0, the candidate is crypted later
+     */
+    int offer(String word, String strategy) {
+        Batch batch = this.current.get();
+        if(batch != null && batch.strategy != strategy) {
+            handOver(batch);
+            batch = null;
+        }
+        if(batch == null) {
+            batch = take(this.free);
+            batch.strategy = strategy;
+            batch.size = 0;
+            this.current.set(batch);
+        }
+        long key = 0;
+        for(int i = 0; i < KEY_LENGTH && i < word.length(); i++)
+            key |= (long) (word.charAt(i) << 1 & 0xff) << 8 * i;
+        batch.keys[batch.size] = key;
+        batch.words[batch.size++] = word;
+        if(batch.size == BATCH_SIZE)
+            handOver(batch);
+        return 0;
+    }
+
+    /**
+     * Hands over the calling generator thread's partly filled batch, to call when it is done generating.
+     */
+    void flush() {
+        Batch batch = this.current.get();
+        if(batch != null && batch.size > 0)
+            handOver(batch);
+    }
+
+    private void handOver(Batch batch) {
+        this.current.set(null);
+        while(!this.full.offer(batch))
+            pause();
+    }
+
+    private Batch take(Ring ring) {
+        Batch batch;
+        while((batch = ring.poll()) == null)
+            pause();
+        return batch;
+    }
+
+    private static void pause() {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+    }
+
+    private void crypt() {
+        int[] schedule = new int[32];
+        int[] block = new int[2];
+        while(true) {
+            boolean closing = this.closed;
+            Batch batch = this.full.poll();
+            if(batch == null) {
+                if(closing)
+                    return;
+                pause();
+                continue;
+            }
+            for(int i = 0; i < batch.size; i++) {
+                jcrypt.keySchedule(batch.keys[i], schedule);
+                this.tester.test(schedule, block, batch.words[i], batch.strategy);
+                batch.words[i] = null;
+            }
+            this.free.offer(batch);
+        }
+    }
+
+    /**
+     * Waits until the crypt workers have crypted every batch handed over and stops them. The generator threads
+     * must have flushed.
+     */
+    void close() {
+        this.closed = true;
+        for(Thread worker : this.workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
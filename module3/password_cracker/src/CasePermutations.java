@@ -0,0 +1,53 @@
+import java.util.List;
+
+/**
+ * Tries every upper/lower case combination of the letters among the first 8 chars of the dictionary words
+ * (the only chars crypt uses). The combinations are enumerated in Gray code order, so every step flips the case
+ * of a single letter, which is a single bit (0x40) of the packed DES key, and the key schedule is updated by
+ * xoring in the precomputed schedule of that bit (see <code>jcrypt.flipKeyBits</code>) instead of being set up
+ * again. Non-letters are never flipped.
+ *
+ * @author Antonio
+ *
+ */
+class CasePermutations {
+    private static final int KEY_LENGTH = 8;
+    private static final int CASE_BIT = 0x20 << 1;
+
+    private CasePermutations() {}
+
+    /**
+     * Runs all case combinations of the words <code>dict[from, to)</code>.
+     * @param dict the dictionary
+     * @param from the first word (inclusive)
+     * @param to the last word (exclusive)
+     * @param tester receives every combination
+     */
+    static void run(List<String> dict, int from, int to, KeyTester tester) {
+        byte[] key = new byte[KEY_LENGTH];
+        int[] letters = new int[KEY_LENGTH];
+        for(int w = from; w < to; w++) {
+            char[] candidate = dict.get(w).toCharArray();
+            int length = Math.min(KEY_LENGTH, candidate.length);
+            int n = 0;
+            for(int i = 0; i < KEY_LENGTH; i++) {
+                key[i] = i < length ? (byte) (candidate[i] << 1) : 0;
+                if(i < length && isLetter(candidate[i]))
+                    letters[n++] = i;
+            }
+            int[] schedule = jcrypt.keySchedule(key);
+            tester.test(schedule, candidate);
+            for(int gray = 1; gray < 1 << n; gray++) {
+                int position = letters[Integer.numberOfTrailingZeros(gray)];
+                jcrypt.flipKeyBits(schedule, position, CASE_BIT);
+                candidate[position] ^= 0x20;
+                tester.test(schedule, candidate);
+            }
+        }
+    }
+
+    private static boolean isLetter(char c) {
+        char lower = (char) (c | 0x20);
+        return lower >= 'a' && lower <= 'z';
+    }
+}
@@ -0,0 +1,118 @@
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tries two word passwords (<code>bluesky</code>, <code>johnsmith</code>): every left word followed by every
+ * right word. Only the first 8 chars reach crypt, so:
+ * <ul>
+ * <li>left words are only used once per distinct first 8 chars, and a left word of 8 chars or more is tried
+ * alone (every right word would give the same key),</li>
+ * <li>the right words are kept in a trie of their first 8 chars, and after a left word of length l the trie is
+ * walked down to depth 8 - l, trying a key at every word end above that depth and at every node at that depth.
+ * A shared prefix of right words is walked (and its key bytes set) once, and every distinct key is tried
+ * once per left word.</li>
+ * </ul>
+ * The key is built in place and its schedule is updated byte by byte (see <code>jcrypt.flipKeyBits</code>).
+ *
+ * @author Antonio
+ *
+ */
+class Combinator {
+    private static final int KEY_LENGTH = 8;
+
+    private static class Node {
+        char[] labels = new char[0];
+        Node[] children = new Node[0];
+        boolean wordEnd = false;
+
+        Node child(char c, boolean create) {
+            int i = Arrays.binarySearch(this.labels, c);
+            if(i >= 0)
+                return this.children[i];
+            if(!create)
+                return null;
+            i = -i - 1;
+            char[] labels = new char[this.labels.length + 1];
+            Node[] children = new Node[this.children.length + 1];
+            System.arraycopy(this.labels, 0, labels, 0, i);
+            System.arraycopy(this.children, 0, children, 0, i);
+            labels[i] = c;
+            children[i] = new Node();
+            System.arraycopy(this.labels, i, labels, i + 1, this.labels.length - i);
+            System.arraycopy(this.children, i, children, i + 1, this.children.length - i);
+            this.labels = labels;
+            this.children = children;
+            return children[i];
+        }
+    }
+
+    private final Node root = new Node();
+
+    /**
+     * Creates the combinator with the given right words.
+     * @param right the words to append to the left words
+     */
+    Combinator(List<String> right) {
+        for(String word : right) {
+            Node node = this.root;
+            for(int i = 0; i < word.length() && i < KEY_LENGTH; i++)
+                node = node.child(word.charAt(i), true);
+            node.wordEnd = true;
+        }
+    }
+
+    /**
+     * Runs the combinations of the left words <code>left[from, to)</code> with all right words.
+     * @param left the left words
+     * @param from the first left word (inclusive)
+     * @param to the last left word (exclusive)
+     * @param tester receives every combination
+     */
+    void run(List<String> left, int from, int to, KeyTester tester) {
+        Set<String> seen = new HashSet<>();
+        byte[] key = new byte[KEY_LENGTH];
+        //the candidate of every length, so that the tester gets exactly the chars of the key
+        char[][] candidates = new char[KEY_LENGTH + 1][];
+        for(int i = 0; i <= KEY_LENGTH; i++)
+            candidates[i] = new char[i];
+        char[] candidate = candidates[KEY_LENGTH];
+        for(int w = from; w < to; w++) {
+            String word = left.get(w);
+            String prefix = word.length() > KEY_LENGTH ? word.substring(0, KEY_LENGTH) : word;
+            if(!seen.add(prefix))
+                continue;
+            Arrays.fill(key, (byte) 0);
+            for(int i = 0; i < prefix.length(); i++) {
+                key[i] = (byte) (prefix.charAt(i) << 1);
+                candidate[i] = prefix.charAt(i);
+            }
+            int[] schedule = jcrypt.keySchedule(key);
+            if(prefix.length() == KEY_LENGTH) {
+                tester.test(schedule, candidate);
+                continue;
+            }
+            walk(this.root, prefix.length(), key, schedule, candidates, tester);
+        }
+    }
+
+    private void walk(Node node, int position, byte[] key, int[] schedule, char[][] candidates, KeyTester tester) {
+        char[] candidate = candidates[KEY_LENGTH];
+        if(node.wordEnd || position == KEY_LENGTH) {
+            System.arraycopy(candidate, 0, candidates[position], 0, position);
+            tester.test(schedule, candidates[position]);
+        }
+        if(position == KEY_LENGTH)
+            return;
+        for(int i = 0; i < node.labels.length; i++) {
+            char c = node.labels[i];
+            jcrypt.flipKeyBits(schedule, position, (key[position] ^ (c << 1)) & 0xff);
+            key[position] = (byte) (c << 1);
+            candidate[position] = c;
+            walk(node.children[i], position + 1, key, schedule, candidates, tester);
+        }
+        jcrypt.flipKeyBits(schedule, position, key[position] & 0xff);
+        key[position] = 0;
+    }
+}
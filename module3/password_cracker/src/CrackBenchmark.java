@@ -0,0 +1,193 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Micro benchmarks of the cracking hot path: single crypts (the <code>jcrypt.crypt</code> baseline next to the key
+ * schedule, incremental, LM and modern engines, so they are compared in the same run), every simple mangle,
+ * <code>prependOne</code>/<code>appendOne</code>, <code>compareWordToPass</code> against 1, 100 and 10000 users over
+ * different numbers of salts, and the brute force enumerator.
+ *
+ * Every benchmark is warmed up and then measured in a few timed iterations on one thread, and reports the
+ * operations per second (mean and the spread of the iterations) and the bytes allocated per operation (from
+ * the allocation counter of the thread, where the JVM has one). The results of the operations are summed into
+ * a field that is printed, so the JIT cannot drop them.
+ *
+ * @author Antonio
+ *
+ */
+public class CrackBenchmark {
+    private static final int WORDS = 1024;
+    private static final int ITERATIONS = 5;
+    //calls between looking at the clock
+    private static final int CALLS = 16;
+
+    private interface Benchmark {
+        /**
+         * @param i the number of the call, to pick the input
+         * @return anything that depends on the work, to keep it from being optimized away
+         */
+        long run(int i);
+    }
+
+    private final String filter;
+    private final long millis;
+    private final String[] words = new String[WORDS];
+    private final long[] keys = new long[WORDS];
+    private long sink = 0;
+
+    private CrackBenchmark(String filter, long millis) {
+        this.filter = filter;
+        this.millis = millis;
+        Random random = new Random(42);
+        for(int i = 0; i < WORDS; i++) {
+            char[] word = new char[4 + random.nextInt(7)];
+            for(int j = 0; j < word.length; j++)
+                word[j] = (char) ((j == 0 && random.nextBoolean() ? 'A' : 'a') + random.nextInt(26));
+            this.words[i] = new String(word);
+            for(int j = 0; j < 8 && j < word.length; j++)
+                this.keys[i] |= (long) (word[j] << 1 & 0xff) << 8 * j;
+        }
+    }
+
+    private void measure(String name, Benchmark benchmark) {
+        if(this.filter != null && !name.contains(this.filter))
+            return;
+        //warm up as long as one measurement
+        run(benchmark, this.millis);
+        double[] rates = new double[ITERATIONS];
+        long calls = 0;
+        long allocated = 0;
+        for(int i = 0; i < ITERATIONS; i++) {
+            long before = allocatedBytes();
+            long start = System.nanoTime();
+            long n = run(benchmark, this.millis);
+            long elapsed = System.nanoTime() - start;
+            allocated += allocatedBytes() - before;
+            calls += n;
+            rates[i] = n * 1e9 / elapsed;
+        }
+        double mean = 0;
+        double min = Double.MAX_VALUE;
+        double max = 0;
+        for(double rate : rates) {
+            mean += rate / ITERATIONS;
+            min = Math.min(min, rate);
+            max = Math.max(max, rate);
+        }
+        String perCall = allocatedBytes() < 0 ? "n/a" : String.format("%.1f", (double) allocated / calls);
+        System.out.println(String.format("%-44s %14.1f ops/s  [%.1f, %.1f]  %10s B/op", name, mean, min, max, perCall));
+    }
+
+    private long run(Benchmark benchmark, long millis) {
+        long end = System.nanoTime() + millis * 1000000;
+        long calls = 0;
+        long sum = 0;
+        do {
+            for(int i = 0; i < CALLS; i++)
+                sum += benchmark.run((int) calls++);
+        } while(System.nanoTime() < end);
+        this.sink += sum;
+        return calls;
+    }
+
+    //-1 if the JVM does not count the bytes allocated per thread
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if(!(threads instanceof com.sun.management.ThreadMXBean))
+            return -1;
+        return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private String word(int i) {
+        return this.words[i & WORDS - 1];
+    }
+
+    private void crypts() {
+        measure("crypt/jcrypt.crypt (baseline)", i -> jcrypt.crypt("ab", word(i)).charAt(12));
+        int[] swaps = jcrypt.saltSwaps("ab");
+        int[] schedule = new int[32];
+        int[] block = new int[2];
+        measure("crypt/keySchedule+encrypt", i -> {
+            jcrypt.keySchedule(this.keys[i & WORDS - 1], schedule);
+            jcrypt.encrypt(schedule, swaps[0], swaps[1], block);
+            return block[0];
+        });
+        measure("crypt/flipKeyBits+encrypt", i -> {
+            jcrypt.flipKeyBits(schedule, i & 7, (i & 0x7f) << 1);
+            jcrypt.encrypt(schedule, swaps[0], swaps[1], block);
+            return block[0];
+        });
+        char[] half = new char[LmCrack.HALF_LENGTH];
+        measure("crypt/lmEncrypt", i -> {
+            String word = word(i);
+            for(int j = 0; j < half.length; j++)
+                half[j] = j < word.length() ? Character.toUpperCase(word.charAt(j)) : 0;
+            jcrypt.keySchedule(jcrypt.lmKey(half, Math.min(half.length, word.length())), schedule);
+            return jcrypt.lmEncrypt(schedule);
+        });
+        byte[] salt = "saltsalt".getBytes();
+        measure("crypt/md5-crypt", i -> ModernCrypt.digest(User.MD5, salt, ModernCrypt.MD5_ROUNDS, word(i))[0]);
+        measure("crypt/sha512-crypt", i -> ModernCrypt.digest(User.SHA512, salt, ModernCrypt.SHA512_DEFAULT_ROUNDS, word(i))[0]);
+    }
+
+    private void mangles() {
+        for(int mangle = 1; mangle <= 12; mangle++) {
+            final int m = mangle;
+            measure("mangle/simpleMangleString " + m, i -> PasswordCrack.simpleMangleString(m, word(i)).length());
+        }
+        measure("mangle/prependOne", i -> PasswordCrack.prependOne(word(i)).size());
+        measure("mangle/appendOne", i -> PasswordCrack.appendOne(word(i)).size());
+    }
+
+    private void compares() {
+        int[][] setups = {{1, 1}, {100, 1}, {100, 10}, {100, 100}, {10000, 1}, {10000, 100}, {10000, 4096}};
+        for(int[] setup : setups) {
+            TargetSet targets = targets(setup[0], setup[1]);
+            measure("compareWordToPass/users=" + setup[0] + " salts=" + setup[1],
+                    i -> PasswordCrack.crackedBy(targets, word(i)).size());
+        }
+    }
+
+    //users of passwords that the benchmark words never crack, spread evenly over the given number of salts
+    private static TargetSet targets(int users, int salts) {
+        String saltChars = "./0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+        List<User> list = new ArrayList<>();
+        for(int i = 0; i < users; i++) {
+            int s = i % salts;
+            String salt = "" + saltChars.charAt(s / 64) + saltChars.charAt(s % 64);
+            list.add(new User("user" + i, jcrypt.crypt(salt, "x#" + i)));
+        }
+        return new TargetSet(list);
+    }
+
+    private void brute() {
+        char[] attempt = new char[6];
+        measure("brute/bruteCandidate+String", i -> {
+            PasswordCrack.bruteCandidate(i, attempt);
+            return new String(attempt).hashCode();
+        });
+        measure("brute/bruteCandidate", i -> {
+            PasswordCrack.bruteCandidate(i, attempt);
+            return attempt[0];
+        });
+    }
+
+    /**
+     * Runs the benchmarks.
+     * @param args args[0] (optional): runs only the benchmarks whose name contains it ("all" for all). args[1]
+     * (optional): the milliseconds of every warm up and measurement iteration (default: 1000).
+     */
+    public static void main(String[] args) {
+        String filter = args.length > 0 && !args[0].equals("all") ? args[0] : null;
+        long millis = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        CrackBenchmark benchmarks = new CrackBenchmark(filter, millis);
+        System.out.println(String.format("%-44s %20s  %s  %15s", "benchmark", "throughput", "[min, max]", "allocation"));
+        benchmarks.crypts();
+        benchmarks.mangles();
+        benchmarks.compares();
+        benchmarks.brute();
+        System.out.println("(checksum " + benchmarks.sink + ")");
+    }
+}
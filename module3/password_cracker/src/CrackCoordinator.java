@@ -0,0 +1,395 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Owns the users (target hashes) and the keyspace of a crack and leases chunks of it to
+ * <code>CrackWorker</code>s over a simple line based TCP protocol:
+ *
+ * <pre>
+ * worker      -> coordinator: HELLO | GET | RENEW id | CRACK id user plaintext | DONE id
+ * coordinator -> worker:      WELCOME leaseMillis, TARGET user hash..., END
+ *                             LEASE id DICT strategy from to ruleFrom ruleTo, WORD word..., END
+ *                             LEASE id BRUTE length from to
+ *                             WAIT millis | CRACKED user | BYE
+ * </pre>
+ *
+ * The keyspace is leased in the same order as <code>PasswordCrack</code> runs it: the mangle strategies
+ * (split by dictionary ranges and, for three mangle, by rule ranges) and then brute force (split by
+ * candidate index ranges). Leases that are not renewed in time (or whose worker disconnects) are handed
+ * out again, and every verified crack is broadcast to all workers so that they can drop the user.
+ *
+ * @author Antonio
+ *
+ */
+public class CrackCoordinator {
+    private static final long LEASE_CANDIDATES = 65536;
+    private static final long BRUTE_LEASE_CANDIDATES = 62 * 62 * 62;
+    private static final int MAX_BRUTE_LENGTH = 8;
+    private static final long WAIT_MILLIS = 1000;
+
+    private static final int[] RULES_PER_LEASE = {12, 12, 12, 1, 12, 12};
+
+    private class WorkUnit {
+        private final boolean brute;
+        private final int strategyOrLength;
+        private final long from;
+        private final long to;
+        private final int ruleFrom;
+        private final int ruleTo;
+
+        WorkUnit(boolean brute, int strategyOrLength, long from, long to, int ruleFrom, int ruleTo) {
+            this.brute = brute;
+            this.strategyOrLength = strategyOrLength;
+            this.from = from;
+            this.to = to;
+            this.ruleFrom = ruleFrom;
+            this.ruleTo = ruleTo;
+        }
+    }
+
+    private class Lease {
+        private final long id;
+        private final WorkUnit unit;
+        private final Connection owner;
+        private volatile long deadline;
+
+        Lease(long id, WorkUnit unit, Connection owner) {
+            this.id = id;
+            this.unit = unit;
+            this.owner = owner;
+            renew();
+        }
+
+        void renew() {
+            this.deadline = System.currentTimeMillis() + leaseMillis;
+        }
+    }
+
+    private final List<User> users;
+    private final List<String> dict;
+    private final int port;
+    private final long leaseMillis;
+
+    private final Deque<WorkUnit> requeued = new ConcurrentLinkedDeque<>();
+    private final Map<Long, Lease> leases = new ConcurrentHashMap<>();
+    private final List<Connection> workers = new CopyOnWriteArrayList<>();
+    private final AtomicLong nextLeaseId = new AtomicLong();
+    private ServerSocket serverSocket;
+    private volatile boolean finished = false;
+
+    //position of the next unleased work unit
+    private int strategy = 0;
+    private long word = 0;
+    private int rule = 1;
+    private int bruteLength = 1;
+    private long bruteIndex = 0;
+
+    /**
+     * Creates the coordinator for the given dictionary and password file.
+     * @param dictionaryFile the path to the dictionary file
+     * @param userInfoFile the path to the password file
+     * @param port the port to listen for workers on
+     * @param leaseMillis the time a worker has to finish (or renew) a lease before it is handed out again
+     */
+    public CrackCoordinator(String dictionaryFile, String userInfoFile, int port, long leaseMillis) {
+        this.users = new CopyOnWriteArrayList<>(PasswordCrack.readInUsers(userInfoFile));
+        this.dict = PasswordCrack.buildDictionary(this.users, dictionaryFile);
+        this.port = port;
+        this.leaseMillis = leaseMillis;
+    }
+
+    /**
+     * Listens for workers and hands out leases until every user is cracked or the whole keyspace is done.
+     */
+    public void run() {
+        if(this.users.isEmpty())
+            return;
+        try {
+            this.serverSocket = new ServerSocket(this.port);
+        } catch (IOException e) {
+            System.out.println("Could not listen on port: " + this.port);
+            System.out.println("Exiting...");
+            System.exit(0);
+        }
+        System.out.println("Coordinating " + this.users.size() + " users and " + this.dict.size()
+            + " words on port " + this.serverSocket.getLocalPort());
+
+        ScheduledExecutorService reaper = Executors.newSingleThreadScheduledExecutor();
+        reaper.scheduleAtFixedRate(this::requeueExpiredLeases, this.leaseMillis, this.leaseMillis / 4 + 1,
+                TimeUnit.MILLISECONDS);
+
+        while(!this.finished) {
+            try {
+                Connection connection = new Connection(this.serverSocket.accept());
+                this.workers.add(connection);
+                new Thread(connection).start();
+            } catch (IOException e) {
+                if(!this.finished)
+                    System.out.println("Could not accept worker: " + e.getMessage());
+            }
+        }
+        reaper.shutdownNow();
+    }
+
+    //leases the next unit to the given worker, registered under the same monitor as checkFinished so that a unit is
+    //never out of both the keyspace and the leases, null if there is none left
+    private synchronized Lease nextLease(Connection owner) {
+        WorkUnit unit = nextUnit();
+        if(unit == null)
+            return null;
+        Lease lease = new Lease(this.nextLeaseId.incrementAndGet(), unit, owner);
+        this.leases.put(lease.id, lease);
+        return lease;
+    }
+
+    private WorkUnit nextUnit() {
+        WorkUnit unit = this.requeued.poll();
+        if(unit != null)
+            return unit;
+
+        while(this.strategy < PasswordCrack.STRATEGIES) {
+            if(this.word >= this.dict.size()) {
+                this.strategy++;
+                this.word = 0;
+                this.rule = 1;
+                continue;
+            }
+            long candidatesPerWord = PasswordCrack.CANDIDATES_PER_WORD[this.strategy] * RULES_PER_LEASE[this.strategy] / 12;
+            long words = Math.max(1, LEASE_CANDIDATES / candidatesPerWord);
+            long to = Math.min(this.dict.size(), this.word + words);
+            int ruleTo = Math.min(12, this.rule + RULES_PER_LEASE[this.strategy] - 1);
+            unit = new WorkUnit(false, this.strategy, this.word, to, this.rule, ruleTo);
+            if(ruleTo == 12) {
+                this.word = to;
+                this.rule = 1;
+            } else {
+                this.rule = ruleTo + 1;
+            }
+            return unit;
+        }
+
+        while(this.bruteLength <= MAX_BRUTE_LENGTH) {
+            long candidates = pow(PasswordCrack.BRUTE_CHARS, this.bruteLength);
+            if(this.bruteIndex >= candidates) {
+                this.bruteLength++;
+                this.bruteIndex = 0;
+                continue;
+            }
+            long to = Math.min(candidates, this.bruteIndex + BRUTE_LEASE_CANDIDATES);
+            unit = new WorkUnit(true, this.bruteLength, this.bruteIndex, to, 0, 0);
+            this.bruteIndex = to;
+            return unit;
+        }
+        return null;
+    }
+
+    private static long pow(long base, int exp) {
+        long result = 1;
+        for(int i = 0; i < exp; i++)
+            result *= base;
+        return result;
+    }
+
+    private synchronized void requeueExpiredLeases() {
+        long now = System.currentTimeMillis();
+        Iterator<Lease> it = this.leases.values().iterator();
+        while(it.hasNext()) {
+            Lease lease = it.next();
+            if(lease.deadline < now) {
+                this.requeued.addFirst(lease.unit);
+                it.remove();
+            }
+        }
+    }
+
+    private synchronized void requeueLeasesOf(Connection owner) {
+        Iterator<Lease> it = this.leases.values().iterator();
+        while(it.hasNext()) {
+            Lease lease = it.next();
+            if(lease.owner == owner) {
+                this.requeued.addFirst(lease.unit);
+                it.remove();
+            }
+        }
+    }
+
+    private synchronized void checkFinished() {
+        if(this.finished)
+            return;
+        boolean keyspaceDone = this.strategy >= PasswordCrack.STRATEGIES && this.bruteLength > MAX_BRUTE_LENGTH
+                && this.requeued.isEmpty() && this.leases.isEmpty();
+        if(!this.users.isEmpty() && !keyspaceDone)
+            return;
+        this.finished = true;
+        System.out.println("Done. " + this.users.size() + " users left uncracked.");
+        for(Connection worker : this.workers)
+            worker.send("BYE");
+        try {
+            this.serverSocket.close();
+        } catch (IOException e) {
+            //closing anyway
+        }
+    }
+
+    private void crack(String username, String plaintext) {
+        for(User user : this.users) {
+            if(user.username.equals(username)
+                    && user.crackedBy(plaintext)) {
+                if(this.users.remove(user)) {
+                    System.out.println(plaintext);
+                    for(Connection worker : this.workers)
+                        worker.send("CRACKED " + username);
+                }
+            }
+        }
+    }
+
+    private class Connection implements Runnable {
+        private final Socket socket;
+        private PrintWriter out;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = new PrintWriter(socket.getOutputStream(), false);
+        }
+
+        synchronized void send(String line) {
+            this.out.println(line);
+            this.out.flush();
+        }
+
+        @Override
+        public void run() {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(this.socket.getInputStream()))) {
+                String line;
+                while((line = in.readLine()) != null) {
+                    handle(line);
+                }
+            } catch (SocketException e) {
+                //worker went away
+            } catch (IOException e) {
+                System.out.println("Lost worker: " + e.getMessage());
+            } finally {
+                disconnect();
+            }
+        }
+
+        private void handle(String line) {
+            String[] parts = line.split(" ", 4);
+            switch (parts[0]) {
+            case "HELLO":
+                hello();
+                break;
+            case "GET":
+                lease();
+                break;
+            case "RENEW":
+                Long id = leaseId(parts, line);
+                Lease lease = id == null ? null : leases.get(id);
+                if(lease != null)
+                    lease.renew();
+                break;
+            case "CRACK":
+                if(parts.length < 3) {
+                    System.out.println("Malformed message from worker: " + line);
+                    break;
+                }
+                crack(parts[2], parts.length == 4 ? parts[3] : "");
+                checkFinished();
+                break;
+            case "DONE":
+                id = leaseId(parts, line);
+                if(id != null)
+                    leases.remove(id);
+                checkFinished();
+                break;
+            default:
+                System.out.println("Unknown message from worker: " + line);
+            }
+        }
+
+        //the lease id of a RENEW or DONE, null (and logged) if it is missing or not a number
+        private Long leaseId(String[] parts, String line) {
+            try {
+                if(parts.length >= 2)
+                    return Long.parseLong(parts[1]);
+            } catch (NumberFormatException e) {
+                //logged below
+            }
+            System.out.println("Malformed message from worker: " + line);
+            return null;
+        }
+
+        private synchronized void hello() {
+            this.out.println("WELCOME " + leaseMillis);
+            for(User user : users)
+                this.out.println("TARGET " + user.username + " " + user.encryptedPasswordData);
+            this.out.println("END");
+            this.out.flush();
+        }
+
+        private void lease() {
+            Lease lease = finished ? null : nextLease(this);
+            if(lease == null) {
+                checkFinished();
+                send(finished ? "BYE" : "WAIT " + WAIT_MILLIS);
+                return;
+            }
+            WorkUnit unit = lease.unit;
+            if(unit.brute) {
+                send("LEASE " + lease.id + " BRUTE " + unit.strategyOrLength + " " + unit.from + " " + unit.to);
+                return;
+            }
+            synchronized (this) {
+                this.out.println("LEASE " + lease.id + " DICT " + unit.strategyOrLength + " " + unit.from + " "
+                        + unit.to + " " + unit.ruleFrom + " " + unit.ruleTo);
+                for(long w = unit.from; w < unit.to; w++)
+                    this.out.println("WORD " + dict.get((int) w));
+                this.out.println("END");
+                this.out.flush();
+            }
+        }
+
+        private void disconnect() {
+            workers.remove(this);
+            requeueLeasesOf(this);
+            try {
+                this.socket.close();
+            } catch (IOException e) {
+                //already closed
+            }
+        }
+    }
+
+    /**
+     * Starts the coordinator. Workers are started with <code>CrackWorker</code>.
+     * @param args args[0]: the path to the dictionary file. args[1]: the path to the password file. args[2]: the port.
+     * args[3] (optional): the lease time in seconds (default 30).
+     */
+    public static void main(String[] args) {
+        if(args.length != 3 && args.length != 4) {
+            System.out.println("Expects arguments in the form: <path to dictionary file> <path to password file> <port>"
+                    + " [lease seconds]");
+            System.exit(0);
+        }
+        long leaseMillis = args.length == 4 ? Long.parseLong(args[3]) * 1000 : 30000;
+        new CrackCoordinator(args[0], args[1], Integer.parseInt(args[2]), leaseMillis).run();
+        System.exit(0);
+    }
+}
@@ -0,0 +1,316 @@
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Cracks the password files dropped into a spool directory, in one long-lived (and JIT-warm) process with the
+ * dictionary loaded once. Every file is a job with its own results file
+ * (<code>&lt;output&gt;/&lt;file&gt;.&lt;start time in ms&gt;.jsonl</code>).
+ *
+ * The work is a fixed sequence of units: chunks of the dictionary for every mangle strategy, cheapest first, and
+ * then ranges of brute force candidates, shortest first. Every job keeps its position in the sequence, and the
+ * next unit run is always the lowest position of any job, against the users of all jobs at that position
+ * merged by salt. A new file thus starts at the cheapest units right away, while the older jobs wait, and
+ * once it has caught up it shares every crypt with them. Files are picked up when they appear in the spool
+ * directory, so they should be written elsewhere and moved in. A file moved in again under the same name, with a
+ * new modification time, is a new job.
+ *
+ * @author Antonio
+ *
+ */
+public class CrackDaemon {
+    private static final long UNIT_CANDIDATES = 1 << 18;
+    private static final long BRUTE_UNIT = 62 * 62 * 62;
+    private static final int MAX_BRUTE_LENGTH = 8;
+
+    private class Job {
+        private final String name;
+        private final TargetSet users;
+        private final int total;
+        private final ResultSink results;
+        private final long startTime = System.currentTimeMillis();
+        private long next = 0;
+
+        Job(String name, List<User> users, ResultSink results) {
+            this.name = name;
+            this.users = new TargetSet(users);
+            this.total = users.size();
+            this.results = results;
+        }
+    }
+
+    private final List<String> dict;
+    private final Path spool;
+    private final Path output;
+    private final int threads;
+    private final ExecutorService executorService;
+    //the words per unit and the first unit of every strategy, then the first brute force unit
+    private final int[] wordsPerUnit = new int[PasswordCrack.STRATEGIES];
+    private final long[] firstUnit = new long[PasswordCrack.STRATEGIES + 1];
+    private final long[] firstBruteUnit = new long[MAX_BRUTE_LENGTH + 2];
+    private final List<Job> jobs = new ArrayList<>();
+    private final Map<User, Job> owners = new ConcurrentHashMap<>();
+    //the modification time of every file queued, so a re-listing of the spool directory skips the files seen
+    private final Map<String, FileTime> seen = new HashMap<>();
+    private final LongAdder candidates = new LongAdder();
+
+    /**
+     * Creates the daemon.
+     * @param dictionaryFile the path to the dictionary file
+     * @param spool the spool directory to watch
+     * @param output the directory of the results files
+     * @param threads the number of threads crypting
+     */
+    public CrackDaemon(String dictionaryFile, String spool, String output, int threads) {
+        this.dict = PasswordCrack.buildDictionary(Collections.emptyList(), dictionaryFile, false);
+        this.spool = Paths.get(spool);
+        this.output = Paths.get(output);
+        this.threads = threads;
+        this.executorService = Executors.newFixedThreadPool(threads);
+        for(int s = 0; s < PasswordCrack.STRATEGIES; s++) {
+            this.wordsPerUnit[s] = (int) Math.max(1, UNIT_CANDIDATES / PasswordCrack.CANDIDATES_PER_WORD[s]);
+            this.firstUnit[s + 1] = this.firstUnit[s] + (this.dict.size() + this.wordsPerUnit[s] - 1) / this.wordsPerUnit[s];
+        }
+        this.firstBruteUnit[1] = this.firstUnit[PasswordCrack.STRATEGIES];
+        for(int length = 1; length <= MAX_BRUTE_LENGTH; length++) {
+            long candidates = (long) Math.pow(PasswordCrack.BRUTE_CHARS, length);
+            this.firstBruteUnit[length + 1] = this.firstBruteUnit[length] + (candidates + BRUTE_UNIT - 1) / BRUTE_UNIT;
+        }
+    }
+
+    /**
+     * Cracks the files in the spool directory and then every file that appears in it, forever.
+     * @throws IOException if the spool directory could not be watched
+     * @throws InterruptedException if interrupted while waiting for files
+     */
+    public void run() throws IOException, InterruptedException {
+        Files.createDirectories(this.output);
+        WatchService watcher = FileSystems.getDefault().newWatchService();
+        this.spool.register(watcher, StandardWatchEventKinds.ENTRY_CREATE);
+        addFiles();
+        System.out.println("Watching " + this.spool + " with " + this.dict.size() + " words...");
+        while(true) {
+            //only block for new files when there is nothing to crack
+            WatchKey key = this.jobs.isEmpty() ? watcher.take() : watcher.poll();
+            if(key != null) {
+                for(WatchEvent<?> event : key.pollEvents()) {
+                    if(event.kind() == StandardWatchEventKinds.ENTRY_CREATE)
+                        addFile(this.spool.resolve((Path) event.context()));
+                    else if(event.kind() == StandardWatchEventKinds.OVERFLOW)
+                        //events were lost, so any file may have appeared
+                        addFiles();
+                }
+                key.reset();
+            }
+            if(!this.jobs.isEmpty())
+                runNextUnit();
+        }
+    }
+
+    private void addFiles() throws IOException {
+        try(Stream<Path> files = Files.list(this.spool)) {
+            files.sorted().forEach(this::addFile);
+        }
+    }
+
+    //a file that fails in any way is logged and skipped, it must not stop the daemon
+    private void addFile(Path file) {
+        try {
+            queueFile(file);
+        } catch (RuntimeException e) {
+            System.out.println("Could not queue " + file + " (" + e + "), skipping it");
+        }
+    }
+
+    private void queueFile(Path file) {
+        String name = file.getFileName().toString();
+        if(name.startsWith(".") || Files.isDirectory(file))
+            return;
+        UserFileParser.Result parsed;
+        try {
+            FileTime modified = Files.getLastModifiedTime(file);
+            if(modified.equals(this.seen.put(name, modified)))
+                return;
+            parsed = UserFileParser.parse(file);
+        } catch (IOException e) {
+            System.out.println("Could not read " + file + " (" + e.getMessage() + "), skipping it");
+            return;
+        }
+        if(parsed.skipped > 0)
+            System.out.println("Skipped " + parsed.skipped + " malformed lines of " + name + ", the first: " + parsed.firstError);
+        List<User> users = parsed.users;
+        for(User user : users)
+            user.host = name;
+        ResultSink results;
+        String resultsFile = name + "." + System.currentTimeMillis() + ".jsonl";
+        try {
+            results = new ResultSink(this.output.resolve(resultsFile).toString(), ResultSink.JSONL, true);
+        } catch (IOException e) {
+            System.out.println("Could not open the results file of " + name + " (" + e.getMessage() + "), skipping it");
+            return;
+        }
+        Job job = new Job(name, users, results);
+        for(User user : users)
+            this.owners.put(user, job);
+        System.out.println("Queued " + name + " with " + users.size() + " users, results in " + resultsFile);
+        //the users' own names first, only against themselves
+        List<Callable<Object>> todo = new ArrayList<>();
+        for(User user : users) {
+            todo.add(Executors.callable(() -> {
+                TargetSet self = new TargetSet(Collections.singletonList(user));
+                List<String> names = PasswordCrack.userInfoNames(user);
+                for(int s = PasswordCrack.NO_MANGLE; s <= PasswordCrack.TWO_MANGLE && !self.isEmpty(); s++)
+                    PasswordCrack.runStrategy(s, names, 0, names.size(), 1, 12, word -> test(self, word, "targeted"));
+            }));
+        }
+        invokeAll(todo);
+        this.jobs.add(job);
+        if(job.users.isEmpty())
+            finish(job);
+    }
+
+    private void runNextUnit() {
+        long unit = Long.MAX_VALUE;
+        for(Job job : this.jobs)
+            unit = Math.min(unit, job.next);
+        List<Job> active = new ArrayList<>();
+        List<User> users = new ArrayList<>();
+        for(Job job : this.jobs) {
+            if(job.next == unit) {
+                active.add(job);
+                users.addAll(job.users.users());
+            }
+        }
+        TargetSet targets = new TargetSet(users);
+        if(unit < this.firstUnit[PasswordCrack.STRATEGIES])
+            runDictionaryUnit(unit, targets);
+        else
+            runBruteUnit(unit, targets);
+        for(Job job : active) {
+            job.next++;
+            if(job.users.isEmpty() || job.next >= this.firstBruteUnit[MAX_BRUTE_LENGTH + 1])
+                finish(job);
+        }
+    }
+
+    private void runDictionaryUnit(long unit, TargetSet targets) {
+        int strategy = 0;
+        while(unit >= this.firstUnit[strategy + 1])
+            strategy++;
+        final int s = strategy;
+        int from = (int) (unit - this.firstUnit[s]) * this.wordsPerUnit[s];
+        int to = Math.min(this.dict.size(), from + this.wordsPerUnit[s]);
+        int slice = Math.max(1, (to - from + this.threads - 1) / this.threads);
+        List<Callable<Object>> todo = new ArrayList<>();
+        for(int start = from; start < to; start += slice) {
+            final int first = start;
+            final int last = Math.min(to, start + slice);
+            todo.add(Executors.callable(() -> PasswordCrack.runStrategy(s, this.dict, first, last, 1, 12,
+                    word -> test(targets, word, PasswordCrack.STRATEGY_NAMES[s]))));
+        }
+        invokeAll(todo);
+    }
+
+    private void runBruteUnit(long unit, TargetSet targets) {
+        int length = 1;
+        while(unit >= this.firstBruteUnit[length + 1])
+            length++;
+        long from = (unit - this.firstBruteUnit[length]) * BRUTE_UNIT;
+        long to = Math.min((long) Math.pow(PasswordCrack.BRUTE_CHARS, length), from + BRUTE_UNIT);
+        long slice = (to - from + this.threads - 1) / this.threads;
+        final int n = length;
+        List<Callable<Object>> todo = new ArrayList<>();
+        for(long start = from; start < to; start += slice) {
+            final long first = start;
+            final long last = Math.min(to, start + slice);
+            todo.add(Executors.callable(() -> {
+                char[] attempt = new char[n];
+                for(long i = first; i < last && !targets.isEmpty(); i++) {
+                    PasswordCrack.bruteCandidate(i, attempt);
+                    test(targets, new String(attempt), "brute");
+                }
+            }));
+        }
+        invokeAll(todo);
+    }
+
+    private void invokeAll(List<Callable<Object>> todo) {
+        try {
+            this.executorService.invokeAll(todo);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int test(TargetSet targets, String word, String strategy) {
+        this.candidates.increment();
+        int cracks = 0;
+        for(TargetSet.SaltGroup group : targets.groups()) {
+            List<User> cracked = group.crack(word);
+            if(cracked == null)
+                continue;
+            for(User user : cracked) {
+                if(targets.remove(user)) {
+                    Job job = this.owners.remove(user);
+                    if(job == null || !job.users.remove(user))
+                        continue;
+                    job.results.offer(new CrackEvent(user.username, user.host, word, strategy,
+                            System.currentTimeMillis() - job.startTime, this.candidates.sum()));
+                    cracks++;
+                }
+            }
+        }
+        return cracks;
+    }
+
+    private void finish(Job job) {
+        this.jobs.remove(job);
+        for(User user : job.users.users())
+            this.owners.remove(user);
+        job.results.close();
+        System.out.println("Finished " + job.name + ": " + (job.total - job.users.size()) + " of " + job.total
+                + " cracked in " + (System.currentTimeMillis() - job.startTime) + " ms");
+    }
+
+    /**
+     * Starts the daemon.
+     * @param args args[0]: the path to the dictionary file. args[1]: the spool directory. args[2]: the directory
+     * of the results files. args[3] (optional): the number of threads (default: the number of cores).
+     */
+    public static void main(String[] args) {
+        if(args.length != 3 && args.length != 4) {
+            System.out.println("Expects arguments in the form: <path to dictionary file> <spool directory>"
+                    + " <results directory> [threads]");
+            System.out.println("Password files moved into the spool directory are cracked, the cracks of <file> are"
+                    + " written to <results directory>/<file>.<start time in ms>.jsonl.");
+            System.exit(0);
+        }
+        int threads = args.length == 4 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        try {
+            new CrackDaemon(args[0], args[1], args[2], threads).run();
+        } catch (IOException e) {
+            System.out.println("Could not watch " + args[1] + " (" + e.getMessage() + ")");
+        } catch (InterruptedException e) {
+            //stopping
+        }
+        System.exit(0);
+    }
+}
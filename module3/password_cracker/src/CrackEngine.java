@@ -0,0 +1,62 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The cracker as a library, for services that crack many jobs in one (warm) JVM. A job is built from password
+ * file lines and dictionary words in memory, runs on the engine's threads (shared by all its jobs) and never
+ * exits the process:
+ *
+ * <pre>
+ * CrackEngine engine = new CrackEngine(Runtime.getRuntime().availableProcessors());
+ * CrackJob job = engine.submit(passwdLines, words, 6);
+ * job.subscribe(event -&gt; ...);
+ * List&lt;CrackEvent&gt; cracks = job.results().get(1, TimeUnit.HOURS);
+ * </pre>
+ *
+ * A job runs the mangle strategies of <code>PasswordCrack</code> and then brute force up to the given length.
+ *
+ * @author Antonio
+ *
+ */
+public class CrackEngine implements AutoCloseable {
+    private final ExecutorService executorService;
+
+    /**
+     * Creates the engine.
+     * @param threads the number of threads shared by all jobs
+     */
+    public CrackEngine(int threads) {
+        this.executorService = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "crack-engine");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts a job.
+     * @param passwordLines the lines of the password file(s), <code>account:encrypted password data:...</code>
+     * @param dictionary the dictionary words (the common passwords and the users' names are added to them)
+     * @param bruteLength the length up to which brute force runs after the dictionary, 0 for none
+     * @return the handle of the job
+     * @throws IllegalArgumentException if a password line is malformed
+     */
+    public CrackJob submit(List<String> passwordLines, Iterable<String> dictionary, int bruteLength) {
+        List<User> users = new ArrayList<>();
+        for(String line : passwordLines)
+            users.add(new User(line));
+        CrackJob job = new CrackJob(users, PasswordCrack.buildDictionary(users, dictionary, true), bruteLength);
+        job.start(this.executorService);
+        return job;
+    }
+
+    /**
+     * Stops the engine's threads, running jobs are left unfinished.
+     */
+    @Override
+    public void close() {
+        this.executorService.shutdownNow();
+    }
+}
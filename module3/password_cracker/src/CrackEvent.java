@@ -0,0 +1,29 @@
+/**
+ * A cracked password, as written by a <code>ResultSink</code> and handed out by a <code>CrackJob</code>.
+ *
+ * @author Antonio
+ *
+ */
+public class CrackEvent {
+    public final String username;
+    public final String host;
+    public final String plaintext;
+    public final String strategy;
+    public final long elapsedMillis;
+    public final long candidates;
+
+    CrackEvent(String username, String host, String plaintext, String strategy, long elapsedMillis, long candidates) {
+        this.username = username;
+        this.host = host;
+        this.plaintext = plaintext;
+        this.strategy = strategy;
+        this.elapsedMillis = elapsedMillis;
+        this.candidates = candidates;
+    }
+
+    @Override
+    public String toString() {
+        return (this.host == null ? "" : this.host + ":") + this.username + ":" + this.plaintext + " (" + this.strategy + ", "
+                + this.candidates + " candidates in " + this.elapsedMillis + " ms)";
+    }
+}
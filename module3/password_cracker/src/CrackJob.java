@@ -0,0 +1,221 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * The handle of a job started by a <code>CrackEngine</code>: the future of its cracks, the stream of its cracks
+ * as they are found, its progress and its cancellation. The job is split into small tasks (a chunk of the
+ * dictionary for a strategy, a range of brute force candidates) that check for cancellation at every
+ * candidate, so a cancelled job frees the engine's threads right away.
+ *
+ * @author Antonio
+ *
+ */
+public class CrackJob {
+    private static final int CHUNK_WORDS = 256;
+    private static final long BRUTE_CHUNK = 62 * 62 * 62;
+
+    /**
+     * A snapshot of the progress of a job.
+     */
+    public static class Progress {
+        public final String stage;
+        public final long candidates;
+        public final int cracked;
+        public final int left;
+        public final long elapsedMillis;
+
+        Progress(String stage, long candidates, int cracked, int left, long elapsedMillis) {
+            this.stage = stage;
+            this.candidates = candidates;
+            this.cracked = cracked;
+            this.left = left;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return this.stage + ": " + this.cracked + " cracked, " + this.left + " left, " + this.candidates
+                    + " candidates in " + this.elapsedMillis + " ms";
+        }
+    }
+
+    //unwinds a task once the job is cancelled or everything is cracked
+    private static class Stop extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Stop() {
+            super(null, null, false, false);
+        }
+    }
+    private static final Stop STOP = new Stop();
+
+    private final TargetSet users;
+    private final List<String> dict;
+    private final int bruteLength;
+    private final List<CrackEvent> events = new ArrayList<>();
+    private final List<Consumer<CrackEvent>> listeners = new CopyOnWriteArrayList<>();
+    private final CompletableFuture<List<CrackEvent>> results = new CompletableFuture<>();
+    private final LongAdder candidates = new LongAdder();
+    private final long startTime = System.currentTimeMillis();
+    private volatile String stage = "queued";
+    private volatile boolean cancelled = false;
+
+    CrackJob(List<User> users, List<String> dict, int bruteLength) {
+        this.users = new TargetSet(users);
+        this.dict = dict;
+        this.bruteLength = bruteLength;
+    }
+
+    void start(Executor executor) {
+        List<Runnable> tasks = new ArrayList<>();
+        for(int strategy = 0; strategy < PasswordCrack.STRATEGIES; strategy++) {
+            final int s = strategy;
+            for(int from = 0; from < this.dict.size(); from += CHUNK_WORDS) {
+                final int start = from;
+                final int end = Math.min(this.dict.size(), from + CHUNK_WORDS);
+                tasks.add(() -> PasswordCrack.runStrategy(s, this.dict, start, end, 1, 12,
+                        word -> test(word, PasswordCrack.STRATEGY_NAMES[s])));
+            }
+        }
+        CompletableFuture<Void> work = runAll(executor, "dictionary", tasks);
+        for(int length = 1; length <= this.bruteLength; length++) {
+            final int n = length;
+            work = work.thenCompose(done -> runAll(executor, "brute force length " + n, bruteTasks(n)));
+        }
+        work.whenComplete((done, e) -> {
+            this.stage = this.cancelled ? "cancelled" : "done";
+            if(e != null)
+                this.results.completeExceptionally(e);
+            synchronized(this.events) {
+                this.results.complete(new ArrayList<>(this.events));
+            }
+        });
+    }
+
+    private CompletableFuture<Void> runAll(Executor executor, String stage, List<Runnable> tasks) {
+        if(stopped())
+            return CompletableFuture.completedFuture(null);
+        this.stage = stage;
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for(Runnable task : tasks) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                try {
+                    if(!stopped())
+                        task.run();
+                } catch (Stop e) {
+                    //cancelled or done
+                }
+            }, executor));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+    }
+
+    //one task per core, taking chunks of the candidates until there are none left
+    private List<Runnable> bruteTasks(int length) {
+        List<Runnable> tasks = new ArrayList<>();
+        long candidates = (long) Math.pow(PasswordCrack.BRUTE_CHARS, length);
+        AtomicLong next = new AtomicLong();
+        for(int i = 0; i < Runtime.getRuntime().availableProcessors(); i++) {
+            tasks.add(() -> {
+                char[] attempt = new char[length];
+                long start;
+                while((start = next.getAndAdd(BRUTE_CHUNK)) < candidates) {
+                    long end = Math.min(candidates, start + BRUTE_CHUNK);
+                    for(long c = start; c < end; c++) {
+                        PasswordCrack.bruteCandidate(c, attempt);
+                        test(new String(attempt), "brute");
+                    }
+                }
+            });
+        }
+        return tasks;
+    }
+
+    private boolean stopped() {
+        return this.cancelled || this.users.isEmpty();
+    }
+
+    private int test(String word, String strategy) {
+        if(stopped())
+            throw STOP;
+        this.candidates.increment();
+        int cracks = 0;
+        for(TargetSet.SaltGroup group : this.users.groups()) {
+            List<User> cracked = group.crack(word);
+            if(cracked == null)
+                continue;
+            for(User user : cracked) {
+                if(this.users.remove(user)) {
+                    publish(new CrackEvent(user.username, user.host, word, strategy,
+                            System.currentTimeMillis() - this.startTime, this.candidates.sum()));
+                    cracks++;
+                }
+            }
+        }
+        return cracks;
+    }
+
+    private void publish(CrackEvent event) {
+        synchronized(this.events) {
+            this.events.add(event);
+            for(Consumer<CrackEvent> listener : this.listeners) {
+                try {
+                    listener.accept(event);
+                } catch (RuntimeException e) {
+                    //a broken listener must not stop the job
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the future of all cracks, completed when the job is done (everything cracked or all work run),
+     * cancelled when the job is
+     */
+    public CompletableFuture<List<CrackEvent>> results() {
+        return this.results;
+    }
+
+    /**
+     * Subscribes to the cracks: the given listener gets the cracks found so far and then every new crack, in
+     * order, on the thread that found it (so it should not block).
+     * @param listener the listener
+     */
+    public void subscribe(Consumer<CrackEvent> listener) {
+        synchronized(this.events) {
+            for(CrackEvent event : this.events)
+                listener.accept(event);
+            this.listeners.add(listener);
+        }
+    }
+
+    /**
+     * @return the progress of the job
+     */
+    public Progress progress() {
+        int cracked;
+        synchronized(this.events) {
+            cracked = this.events.size();
+        }
+        return new Progress(this.stage, this.candidates.sum(), cracked, this.users.size(),
+                System.currentTimeMillis() - this.startTime);
+    }
+
+    /**
+     * Cancels the job: its tasks stop at their next candidate and the future of its results is cancelled.
+     */
+    public void cancel() {
+        this.cancelled = true;
+        this.results.cancel(false);
+    }
+
+    public boolean isDone() {
+        return this.results.isDone();
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * The optional parameters of <code>PasswordCrack</code>, given after the dictionary and password file in the
+ * form <code>&lt;parameter&gt;=&lt;argument&gt;</code>.
+ *
+ * @author Antonio
+ *
+ */
+class CrackOptions {
+    String potFile = null;
+    boolean targeted = false;
+    String resultsFile = null;
+    String resultsFormat = ResultSink.JSONL;
+    long budgetSeconds = 0;
+    boolean ruleStats = false;
+    String ruleStatsFile = null;
+    boolean casePermutations = false;
+    boolean leetspeak = false;
+    String leetTable = Leetspeak.DEFAULT_TABLE;
+    int leetMax = Leetspeak.DEFAULT_MAX_VARIANTS;
+    String combinatorFile = null;
+    int princeElements = 0;
+    String princeProgressFile = null;
+    String auditFile = null;
+    String rainbowDirectory = null;
+    int generators = Runtime.getRuntime().availableProcessors();
+    int crypters = 0;
+
+    /**
+     * Parses the given parameters, exits if any of them is not supported.
+     * @param args the parameters
+     * @return the options
+     */
+    static CrackOptions parse(String[] args) {
+        CrackOptions options = new CrackOptions();
+        for(String arg : args) {
+            String[] parsedArg = parseInputArgument(arg);
+            switch (parsedArg[0]) {
+            case "--pot":
+                options.potFile = parsedArg[1];
+                break;
+            case "--targeted":
+                options.targeted = Boolean.parseBoolean(parsedArg[1]);
+                break;
+            case "--results":
+                options.resultsFile = parsedArg[1];
+                break;
+            case "--results-format":
+                if(!parsedArg[1].equals(ResultSink.JSONL) && !parsedArg[1].equals(ResultSink.CSV)) {
+                    System.out.println("Expected --results-format=jsonl or --results-format=csv");
+                    System.out.println("Exiting...");
+                    System.exit(0);
+                }
+                options.resultsFormat = parsedArg[1];
+                break;
+            case "--budget":
+                options.budgetSeconds = parseLong(parsedArg);
+                break;
+            case "--rule-stats":
+                options.ruleStats = Boolean.parseBoolean(parsedArg[1]);
+                break;
+            case "--rule-stats-file":
+                options.ruleStats = true;
+                options.ruleStatsFile = parsedArg[1];
+                break;
+            case "--case-permutations":
+                options.casePermutations = Boolean.parseBoolean(parsedArg[1]);
+                break;
+            case "--leetspeak":
+                options.leetspeak = Boolean.parseBoolean(parsedArg[1]);
+                break;
+            case "--leet-table":
+                options.leetspeak = true;
+                options.leetTable = parsedArg[1];
+                try {
+                    new Leetspeak(options.leetTable, options.leetMax);
+                } catch (IllegalArgumentException e) {
+                    System.out.println(e.getMessage());
+                    System.out.println("Exiting...");
+                    System.exit(0);
+                }
+                break;
+            case "--leet-max":
+                options.leetspeak = true;
+                options.leetMax = parseInt(parsedArg);
+                break;
+            case "--combinator":
+                options.combinatorFile = parsedArg[1];
+                break;
+            case "--prince":
+                options.princeElements = parseInt(parsedArg);
+                break;
+            case "--prince-progress":
+                options.princeProgressFile = parsedArg[1];
+                break;
+            case "--audit":
+                options.auditFile = parsedArg[1];
+                break;
+            case "--rainbow":
+                options.rainbowDirectory = parsedArg[1];
+                break;
+            case "--generators":
+                options.generators = Math.max(1, parseInt(parsedArg));
+                break;
+            case "--crypters":
+                options.crypters = parseInt(parsedArg);
+                break;
+            default:
+                System.out.println("Parameter " + parsedArg[0] + " is not supported.");
+                System.out.println("Currently supported parameters are: --pot, --targeted, --results, --results-format,"
+                        + " --budget, --rule-stats, --rule-stats-file, --case-permutations, --leetspeak, --leet-table,"
+                        + " --leet-max, --combinator, --prince, --prince-progress, --audit, --rainbow, --generators,"
+                        + " --crypters");
+                System.out.println("Exiting...");
+                System.exit(0);
+            }
+        }
+        return options;
+    }
+
+    //a bad number is reported like any other malformed parameter
+    private static int parseInt(String[] parsedArg) {
+        try {
+            return Integer.parseInt(parsedArg[1]);
+        } catch (NumberFormatException e) {
+            exitOnNumber(parsedArg);
+            return 0;
+        }
+    }
+
+    private static long parseLong(String[] parsedArg) {
+        try {
+            return Long.parseLong(parsedArg[1]);
+        } catch (NumberFormatException e) {
+            exitOnNumber(parsedArg);
+            return 0;
+        }
+    }
+
+    private static void exitOnNumber(String[] parsedArg) {
+        System.out.println("Expected the following format for " + parsedArg[0] + ": " + parsedArg[0] + "=<whole number>");
+        System.out.println("Received: " + parsedArg[0] + "=" + parsedArg[1]);
+        System.out.println("Exiting...");
+        System.exit(0);
+    }
+
+    private static String[] parseInputArgument(String arg) {
+        String[] parsed = arg.split("=", 2);
+        if(parsed.length != 2) {
+            System.out.println("Expected the following format for parameters: <parameter>=<argument>");
+            System.out.println("Received: " + arg);
+            System.out.println("Exiting...");
+            System.exit(0);
+        }
+        return parsed;
+    }
+}
@@ -0,0 +1,213 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cracks the leases handed out by a <code>CrackCoordinator</code>. Every worker thread asks for its own
+ * lease, so one worker process per machine (with one thread per core) is enough, but several processes
+ * on the same host work as well.
+ *
+ * @author Antonio
+ *
+ */
+public class CrackWorker {
+    private static final String POISON = "BYE";
+
+    //the targets left, grouped by salt so a candidate is crypted once per salt, and by username
+    private TargetSet targets;
+    private final Map<String, User> byUsername = new ConcurrentHashMap<>();
+    private final BlockingQueue<String[]> leases = new LinkedBlockingQueue<>();
+    private final List<Long> activeLeases = new CopyOnWriteArrayList<>();
+    private final int threads;
+    private Socket socket;
+    private BufferedReader in;
+    private PrintWriter out;
+    private long leaseMillis;
+
+    /**
+     * Connects to the coordinator and receives the targets.
+     * @param host the host of the coordinator
+     * @param port the port of the coordinator
+     * @param threads the number of threads cracking leases
+     */
+    public CrackWorker(String host, int port, int threads) {
+        this.threads = threads;
+        try {
+            this.socket = new Socket(host, port);
+            this.in = new BufferedReader(new InputStreamReader(this.socket.getInputStream()));
+            this.out = new PrintWriter(this.socket.getOutputStream(), false);
+            send("HELLO");
+            String[] welcome = this.in.readLine().split(" ");
+            this.leaseMillis = Long.parseLong(welcome[1]);
+            String line;
+            List<User> users = new ArrayList<>();
+            while(!(line = this.in.readLine()).equals("END")) {
+                String[] target = line.split(" ");
+                User user = new User(target[1], target[2]);
+                users.add(user);
+                this.byUsername.put(user.username, user);
+            }
+            this.targets = new TargetSet(users);
+        } catch (IOException | NullPointerException e) {
+            System.out.println("Could not connect to coordinator at " + host + ":" + port);
+            System.out.println("Exiting...");
+            System.exit(0);
+        }
+    }
+
+    private synchronized void send(String line) {
+        this.out.println(line);
+        this.out.flush();
+    }
+
+    /**
+     * Cracks leases until the coordinator says bye (or goes away).
+     */
+    public void run() {
+        ExecutorService executorService = Executors.newFixedThreadPool(this.threads);
+        for(int i = 0; i < this.threads; i++)
+            executorService.execute(this::crackLeases);
+
+        ScheduledExecutorService renewer = Executors.newSingleThreadScheduledExecutor();
+        renewer.scheduleAtFixedRate(() -> {
+            for(long id : this.activeLeases)
+                send("RENEW " + id);
+        }, this.leaseMillis / 3, this.leaseMillis / 3 + 1, TimeUnit.MILLISECONDS);
+
+        try {
+            String line;
+            while((line = this.in.readLine()) != null && !line.equals("BYE")) {
+                String[] parts = line.split(" ", 2);
+                switch (parts[0]) {
+                case "CRACKED":
+                    User cracked = this.byUsername.remove(parts[1]);
+                    if(cracked != null)
+                        this.targets.remove(cracked);
+                    break;
+                case "LEASE":
+                    this.leases.add(readLease(line));
+                    break;
+                case "WAIT":
+                    this.leases.add(new String[] {"WAIT", parts[1]});
+                    break;
+                default:
+                    System.out.println("Unknown message from coordinator: " + line);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Lost coordinator: " + e.getMessage());
+        }
+
+        for(int i = 0; i < this.threads; i++)
+            this.leases.add(new String[] {POISON});
+        executorService.shutdown();
+        try {
+            executorService.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            //exiting anyway
+        }
+        renewer.shutdownNow();
+        try {
+            this.socket.close();
+        } catch (IOException e) {
+            //already closed
+        }
+    }
+
+    //a lease followed by its words (for dictionary leases)
+    private String[] readLease(String header) throws IOException {
+        String[] lease = header.split(" ");
+        if(!lease[2].equals("DICT"))
+            return lease;
+        List<String> words = new ArrayList<>();
+        String line;
+        while(!(line = this.in.readLine()).equals("END"))
+            words.add(line.substring(5));
+        String[] withWords = new String[lease.length + words.size()];
+        System.arraycopy(lease, 0, withWords, 0, lease.length);
+        for(int i = 0; i < words.size(); i++)
+            withWords[lease.length + i] = words.get(i);
+        return withWords;
+    }
+
+    private void crackLeases() {
+        try {
+            while(true) {
+                send("GET");
+                String[] lease = this.leases.take();
+                if(lease[0].equals(POISON))
+                    return;
+                if(lease[0].equals("WAIT")) {
+                    Thread.sleep(Long.parseLong(lease[1]));
+                    continue;
+                }
+                long id = Long.parseLong(lease[1]);
+                this.activeLeases.add(id);
+                crackLease(id, lease);
+                this.activeLeases.remove(id);
+                send("DONE " + id);
+            }
+        } catch (InterruptedException e) {
+            return;
+        }
+    }
+
+    private void crackLease(long id, String[] lease) {
+        if(lease[2].equals("BRUTE")) {
+            char[] attempt = new char[Integer.parseInt(lease[3])];
+            long to = Long.parseLong(lease[5]);
+            for(long i = Long.parseLong(lease[4]); i < to && !this.targets.isEmpty(); i++) {
+                PasswordCrack.bruteCandidate(i, attempt);
+                compareWordToPass(id, new String(attempt));
+            }
+            return;
+        }
+        int strategy = Integer.parseInt(lease[3]);
+        int words = Integer.parseInt(lease[5]) - Integer.parseInt(lease[4]);
+        List<String> dict = new ArrayList<>(words);
+        for(int i = 0; i < words; i++)
+            dict.add(lease[8 + i]);
+        PasswordCrack.runStrategy(strategy, dict, 0, words, Integer.parseInt(lease[6]), Integer.parseInt(lease[7]),
+                word -> compareWordToPass(id, word));
+    }
+
+    private int compareWordToPass(long id, String word) {
+        int cracks = 0;
+        for(User user : PasswordCrack.crackedBy(this.targets, word)) {
+            if(this.targets.remove(user)) {
+                this.byUsername.remove(user.username);
+                send("CRACK " + id + " " + user.username + " " + word);
+                cracks++;
+            }
+        }
+        return cracks;
+    }
+
+    /**
+     * Starts a worker for the coordinator at the given host and port.
+     * @param args args[0]: the host of the coordinator. args[1]: the port of the coordinator.
+     * args[2] (optional): the number of threads (default: the number of cores).
+     */
+    public static void main(String[] args) {
+        if(args.length != 2 && args.length != 3) {
+            System.out.println("Expects arguments in the form: <coordinator host> <coordinator port> [threads]");
+            System.exit(0);
+        }
+        int threads = args.length == 3 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        new CrackWorker(args[0], Integer.parseInt(args[1]), threads).run();
+        System.exit(0);
+    }
+}
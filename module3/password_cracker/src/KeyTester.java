@@ -0,0 +1,15 @@
+/**
+ * Tests a candidate that is given as its DES key schedule (see <code>jcrypt.keySchedule</code>), for the
+ * generators that build their keys in place.
+ *
+ * @author Antonio
+ *
+ */
+interface KeyTester {
+    /**
+     * @param schedule the key schedule of the candidate
+     * @param candidate the candidate (only valid during the call)
+     * @return the number of cracked users
+     */
+    int test(int[] schedule, char[] candidate);
+}
@@ -0,0 +1,188 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Makes leetspeak variants (<code>p4ssw0rd</code>) of the dictionary words and of their one mangle variants,
+ * using a substitution table like <code>a:4@,e:3,o:0,s:5$</code> (every letter stands for both of its cases).
+ * The substitutions are enumerated by the number of substituted chars, fewest first, and at most
+ * <code>maxVariants</code> variants are made of every word. Only the first 8 chars are substituted (the only
+ * chars crypt uses), in place in a reusable key buffer whose schedule is updated bit by bit (see
+ * <code>jcrypt.flipKeyBits</code>), and variants with the same 8 char key as an earlier variant of the same
+ * word are skipped.
+ *
+ * @author Antonio
+ *
+ */
+class Leetspeak {
+    static final String DEFAULT_TABLE = "a:4@,e:3,i:1!,o:0,s:5$,t:7,l:1,g:9,b:8";
+    static final int DEFAULT_MAX_VARIANTS = 64;
+    private static final int KEY_LENGTH = 8;
+
+    private final char[][] table = new char[128][];
+    private final int maxVariants;
+    private final String version;
+
+    /**
+     * Creates the generator.
+     * @param table the substitution table, <code>char:substitutes</code> separated by commas
+     * @param maxVariants the maximum number of variants of every word (and of every one mangle variant of it)
+     * @throws IllegalArgumentException if the table is malformed
+     */
+    Leetspeak(String table, int maxVariants) {
+        this.maxVariants = maxVariants;
+        this.version = table + "/" + maxVariants;
+        for(String entry : table.split(",")) {
+            if(entry.length() < 3 || entry.charAt(1) != ':' || entry.charAt(0) >= 128)
+                throw new IllegalArgumentException("Expected <char>:<substitutes>, received: " + entry);
+            char c = entry.charAt(0);
+            char[] substitutes = entry.substring(2).toCharArray();
+            this.table[Character.toLowerCase(c)] = substitutes;
+            this.table[Character.toUpperCase(c)] = substitutes;
+        }
+    }
+
+    /**
+     * @return the table and maximum number of variants, what makes the variants differ between runs
+     */
+    String version() {
+        return this.version;
+    }
+
+    /**
+     * Runs the variants of the words <code>dict[from, to)</code>.
+     * @param dict the dictionary
+     * @param from the first word (inclusive)
+     * @param to the last word (exclusive)
+     * @param tester receives every variant
+     */
+    void run(List<String> dict, int from, int to, KeyTester tester) {
+        Walker walker = new Walker(tester);
+        for(int w = from; w < to; w++) {
+            String word = dict.get(w);
+            if(word.isEmpty())
+                continue;
+            walker.seen.clear();
+            walker.walk(word);
+            for(int i = 1; i <= 12; i++)
+                walker.walk(PasswordCrack.simpleMangleString(i, word));
+        }
+    }
+
+    //the buffers of one thread
+    private class Walker {
+        private final KeyTester tester;
+        private final byte[] key = new byte[KEY_LENGTH];
+        private final int[] positions = new int[KEY_LENGTH];
+        private final LongSet seen = new LongSet();
+        private final int[] schedule = new int[32];
+        //the candidate buffer of every length, so that the tester gets exactly the chars of the candidate
+        private char[][] candidates = new char[4 * KEY_LENGTH][];
+        private char[] candidate;
+        private int substitutable;
+        private int variants;
+
+        Walker(KeyTester tester) {
+            this.tester = tester;
+        }
+
+        void walk(String base) {
+            if(base.isEmpty())
+                return;
+            int n = base.length();
+            if(n >= this.candidates.length)
+                this.candidates = Arrays.copyOf(this.candidates, 2 * n);
+            if(this.candidates[n] == null)
+                this.candidates[n] = new char[n];
+            this.candidate = this.candidates[n];
+            base.getChars(0, n, this.candidate, 0);
+            int length = Math.min(KEY_LENGTH, this.candidate.length);
+            this.substitutable = 0;
+            for(int i = 0; i < KEY_LENGTH; i++) {
+                this.key[i] = i < length ? (byte) (this.candidate[i] << 1) : 0;
+                if(i < length && this.candidate[i] < 128 && table[this.candidate[i]] != null)
+                    this.positions[this.substitutable++] = i;
+            }
+            //the base itself is left to the other strategies
+            this.seen.add(packedKey());
+            long key = 0;
+            for(int i = 0; i < KEY_LENGTH; i++)
+                key |= (long) (this.key[i] & 0xff) << 8 * i;
+            jcrypt.keySchedule(key, this.schedule);
+            this.variants = 0;
+            for(int size = 1; size <= this.substitutable && this.variants < maxVariants; size++)
+                substitute(size, 0);
+        }
+
+        private void substitute(int left, int from) {
+            if(left == 0) {
+                if(this.seen.add(packedKey())) {
+                    this.variants++;
+                    this.tester.test(this.schedule, this.candidate);
+                }
+                return;
+            }
+            for(int p = from; p <= this.substitutable - left && this.variants < maxVariants; p++) {
+                int position = this.positions[p];
+                char original = this.candidate[position];
+                for(char substitute : table[original]) {
+                    set(position, substitute);
+                    substitute(left - 1, p + 1);
+                    if(this.variants >= maxVariants)
+                        break;
+                }
+                set(position, original);
+            }
+        }
+
+        private void set(int position, char c) {
+            int bits = (this.key[position] ^ (c << 1)) & 0xff;
+            this.candidate[position] = c;
+            this.key[position] = (byte) (c << 1);
+            jcrypt.flipKeyBits(this.schedule, position, bits);
+        }
+
+        private long packedKey() {
+            long packed = 0;
+            for(int i = 0; i < KEY_LENGTH; i++)
+                packed = packed << 8 | (this.key[i] & 0xff);
+            return packed;
+        }
+    }
+
+    //a set of (non zero) packed keys, cleared for every word
+    private static class LongSet {
+        private long[] slots = new long[1024];
+        private int size = 0;
+
+        boolean add(long value) {
+            if(this.size * 2 >= this.slots.length)
+                grow();
+            int mask = this.slots.length - 1;
+            for(int slot = (int) (value ^ value >>> 29) * 0x9e3779b9 & mask; ; slot = (slot + 1) & mask) {
+                if(this.slots[slot] == value)
+                    return false;
+                if(this.slots[slot] == 0) {
+                    this.slots[slot] = value;
+                    this.size++;
+                    return true;
+                }
+            }
+        }
+
+        private void grow() {
+            long[] old = this.slots;
+            this.slots = new long[old.length * 2];
+            this.size = 0;
+            for(long value : old)
+                if(value != 0)
+                    add(value);
+        }
+
+        void clear() {
+            if(this.size == 0)
+                return;
+            Arrays.fill(this.slots, 0);
+            this.size = 0;
+        }
+    }
+}
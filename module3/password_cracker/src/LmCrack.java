@@ -0,0 +1,327 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Cracks LM hashes (of legacy Windows exports, <code>user:rid:LM hash:NT hash:::</code> or <code>user:LM hash</code>)
+ * with the DES core of <code>jcrypt</code>. The password is upper cased and split into two halves of 7 chars,
+ * and each half is the key of one DES encryption of a constant, without salt. So the halves are cracked
+ * independently against one set of the half hashes of all users, and one encryption tests a candidate half
+ * against all of them.
+ *
+ * The dictionary (with the mangle strategies) is tried first, then brute force of the halves over the upper
+ * case letters, digits and symbols. Brute force steps through the halves in odometer order and updates the key
+ * schedule only for the key bytes that changed, with a table of the schedule of every value of every key byte
+ * (the schedule is linear in the key, see <code>jcrypt.flipKeyBits</code>).
+ *
+ * LM is case insensitive, so the passwords are reported in upper case.
+ *
+ * @author Antonio
+ *
+ */
+public class LmCrack {
+    static final int HALF_LENGTH = 7;
+    //every printable ASCII char but the lower case letters, which LM has upper cased
+    static final String BRUTE_CHARSET;
+    static {
+        StringBuilder sb = new StringBuilder();
+        for(char c = ' '; c <= '~'; c++) {
+            if(c < 'a' || c > 'z')
+                sb.append(c);
+        }
+        BRUTE_CHARSET = sb.toString();
+    }
+    //the number of leading chars that make up a brute force task
+    private static final int TASK_PREFIX = 2;
+    //the words a strategy runs between looking if every half is cracked
+    private static final int DONE_CHECK_WORDS = 256;
+
+    //the schedule of every value of every key byte, xored together they make the schedule of a key
+    private static final int[][][] BYTE_SCHEDULES = new int[8][256][32];
+    static {
+        for(int i = 0; i < 8; i++) {
+            for(int value = 0; value < 256; value++)
+                jcrypt.keySchedule((long) value << 8 * i, BYTE_SCHEDULES[i][value]);
+        }
+    }
+
+    private static class LmUser {
+        final String username;
+        final int first;
+        final int second;
+        boolean reported = false;
+
+        LmUser(String username, int first, int second) {
+            this.username = username;
+            this.first = first;
+            this.second = second;
+        }
+    }
+
+    //the distinct half hashes of all users, sorted, and their plaintexts once cracked
+    private final long[] hashes;
+    private final AtomicReferenceArray<String> plaintexts;
+    private final AtomicInteger left;
+    private final List<LmUser> users = new ArrayList<>();
+    //the users of every half hash
+    private final List<List<LmUser>> owners = new ArrayList<>();
+    private final AtomicInteger crackedUsers = new AtomicInteger();
+    private final ThreadLocal<int[]> schedules = ThreadLocal.withInitial(() -> new int[32]);
+
+    /**
+     * Creates the cracker of the given hash lines.
+     * @param lines the lines, in the form <code>user:rid:LM hash:NT hash:::</code> or <code>user:LM hash</code>
+     */
+    LmCrack(List<String> lines) {
+        List<String> usernames = new ArrayList<>();
+        List<long[]> halves = new ArrayList<>();
+        int skipped = 0;
+        for(String line : lines) {
+            String[] parts = line.split(":");
+            String hash = parts.length >= 4 && isLmHash(parts[2]) ? parts[2]
+                    : parts.length >= 2 && isLmHash(parts[1]) ? parts[1] : null;
+            if(hash == null) {
+                if(!line.isEmpty())
+                    skipped++;
+                continue;
+            }
+            usernames.add(parts[0]);
+            halves.add(new long[] {Long.parseUnsignedLong(hash.substring(0, 16), 16),
+                    Long.parseUnsignedLong(hash.substring(16), 16)});
+        }
+        if(skipped > 0)
+            System.out.println("Skipped " + skipped + " lines without an LM hash");
+        long[] all = new long[halves.size() * 2];
+        for(int i = 0; i < halves.size(); i++) {
+            all[i * 2] = halves.get(i)[0];
+            all[i * 2 + 1] = halves.get(i)[1];
+        }
+        this.hashes = Arrays.stream(all).sorted().distinct().toArray();
+        this.plaintexts = new AtomicReferenceArray<>(this.hashes.length);
+        this.left = new AtomicInteger(this.hashes.length);
+        for(int i = 0; i < this.hashes.length; i++)
+            this.owners.add(new ArrayList<>());
+        for(int i = 0; i < halves.size(); i++) {
+            LmUser user = new LmUser(usernames.get(i), Arrays.binarySearch(this.hashes, halves.get(i)[0]),
+                    Arrays.binarySearch(this.hashes, halves.get(i)[1]));
+            this.users.add(user);
+            this.owners.get(user.first).add(user);
+            if(user.second != user.first)
+                this.owners.get(user.second).add(user);
+        }
+        //the empty half, of every password shorter than 8 chars
+        int[] schedule = new int[32];
+        found(jcrypt.lmEncrypt(schedule), new char[0], 0);
+    }
+
+    private static boolean isLmHash(String field) {
+        if(field.length() != 32)
+            return false;
+        for(char c : field.toCharArray()) {
+            if(Character.digit(c, 16) < 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of users
+     */
+    int users() {
+        return this.users.size();
+    }
+
+    /**
+     * @return if every half hash has been cracked
+     */
+    boolean isDone() {
+        return this.left.get() == 0;
+    }
+
+    /**
+     * Tests a word (of the dictionary or a mangle of it) as a password: upper cased, both its halves.
+     * @param word the candidate
+     * @return the number of cracked halves
+     */
+    int testWord(String word) {
+        if(word.length() > 2 * HALF_LENGTH)
+            return 0;
+        char[] chars = word.toUpperCase(Locale.ROOT).toCharArray();
+        if(chars.length > 2 * HALF_LENGTH)
+            return 0;
+        //LM hashes the OEM code page, only ASCII is the same in all of them
+        for(char c : chars) {
+            if(c >= 0x80)
+                return 0;
+        }
+        int cracks = testHalf(chars, Math.min(HALF_LENGTH, chars.length));
+        if(chars.length > HALF_LENGTH)
+            cracks += testHalf(Arrays.copyOfRange(chars, HALF_LENGTH, chars.length), chars.length - HALF_LENGTH);
+        return cracks;
+    }
+
+    private int testHalf(char[] chars, int length) {
+        int[] schedule = this.schedules.get();
+        jcrypt.keySchedule(jcrypt.lmKey(chars, length), schedule);
+        return found(jcrypt.lmEncrypt(schedule), chars, length);
+    }
+
+    private int found(long hash, char[] chars, int length) {
+        int index = Arrays.binarySearch(this.hashes, hash);
+        if(index < 0 || !this.plaintexts.compareAndSet(index, null, new String(chars, 0, length)))
+            return 0;
+        this.left.decrementAndGet();
+        synchronized(this) {
+            for(LmUser user : this.owners.get(index)) {
+                if(!user.reported && this.plaintexts.get(user.first) != null && this.plaintexts.get(user.second) != null) {
+                    user.reported = true;
+                    System.out.println(user.username + ":" + this.plaintexts.get(user.first)
+                            + this.plaintexts.get(user.second));
+                    this.crackedUsers.incrementAndGet();
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Brute forces all halves of the given length that start with the given prefix (the first
+     * <code>TASK_PREFIX</code> chars, or all but the last if the length is shorter).
+     * @param length the length of the halves
+     * @param prefix the index of the prefix, base <code>BRUTE_CHARSET.length()</code> with the first char the
+     * most significant digit
+     */
+    void brute(int length, long prefix) {
+        char[] charset = BRUTE_CHARSET.toCharArray();
+        int prefixLength = Math.min(TASK_PREFIX, length - 1);
+        char[] chars = new char[length];
+        int[] digits = new int[length];
+        for(int i = prefixLength - 1; i >= 0; i--) {
+            digits[i] = (int) (prefix % charset.length);
+            prefix /= charset.length;
+        }
+        for(int i = 0; i < length; i++)
+            chars[i] = charset[digits[i]];
+        long key = jcrypt.lmKey(chars, length);
+        int[] schedule = new int[32];
+        jcrypt.keySchedule(key, schedule);
+        while(!isDone()) {
+            found(jcrypt.lmEncrypt(schedule), chars, length);
+            //the odometer, over the chars after the prefix
+            int position = length - 1;
+            while(position >= prefixLength && ++digits[position] == charset.length) {
+                digits[position] = 0;
+                chars[position] = charset[0];
+                position--;
+            }
+            if(position < prefixLength)
+                return;
+            chars[position] = charset[digits[position]];
+            long next = jcrypt.lmKey(chars, length);
+            long changed = key ^ next;
+            for(int i = 0; i < 8; i++) {
+                int bits = (int) (changed >>> 8 * i) & 0xff;
+                if(bits == 0)
+                    continue;
+                int[] delta = BYTE_SCHEDULES[i][bits];
+                for(int k = 0; k < 32; k++)
+                    schedule[k] ^= delta[k];
+            }
+            key = next;
+        }
+    }
+
+    /**
+     * Runs the dictionary and then brute force of the halves of 1 to <code>bruteLength</code> chars.
+     * @param dict the dictionary
+     * @param bruteLength the max length of the brute forced halves (0-7)
+     * @param threads the number of threads
+     */
+    void crack(List<String> dict, int bruteLength, int threads) {
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        List<Callable<Object>> todo = new ArrayList<>();
+        int slice = Math.max(1, (dict.size() + threads - 1) / threads);
+        for(int strategy = 0; strategy < PasswordCrack.STRATEGIES; strategy++) {
+            final int s = strategy;
+            for(int from = 0; from < dict.size(); from += slice) {
+                final int first = from;
+                final int last = Math.min(dict.size(), from + slice);
+                todo.add(Executors.callable(() -> {
+                    for(int w = first; w < last && !isDone(); w += DONE_CHECK_WORDS)
+                        PasswordCrack.runStrategy(s, dict, w, Math.min(last, w + DONE_CHECK_WORDS), 1, 12, this::testWord);
+                }));
+            }
+        }
+        invokeAll(executorService, todo);
+        for(int length = 1; length <= bruteLength && !isDone(); length++) {
+            long start = System.currentTimeMillis();
+            final int n = length;
+            long tasks = (long) Math.pow(BRUTE_CHARSET.length(), Math.min(TASK_PREFIX, length - 1));
+            todo.clear();
+            for(long prefix = 0; prefix < tasks; prefix++) {
+                final long p = prefix;
+                todo.add(Executors.callable(() -> brute(n, p)));
+            }
+            invokeAll(executorService, todo);
+            System.out.println("Brute forced the halves of length " + length + " in "
+                    + (System.currentTimeMillis() - start) + " ms, " + this.left.get() + " half hashes left");
+        }
+        executorService.shutdown();
+    }
+
+    private static void invokeAll(ExecutorService executorService, List<Callable<Object>> todo) {
+        try {
+            executorService.invokeAll(todo);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Cracks the LM hashes of a file.
+     * @param args args[0]: the path to the dictionary file. args[1]: the path to the hash file. args[2] (optional):
+     * the max length of the brute forced halves (0-7, default: 7). args[3] (optional): the number of threads
+     * (default: the number of cores).
+     */
+    public static void main(String[] args) {
+        if(args.length < 2 || args.length > 4) {
+            System.out.println("Expects arguments in the form: <path to dictionary file> <path to LM hash file>"
+                    + " [max brute force length (0-7)] [threads]");
+            System.out.println("The hash file holds lines of user:rid:LM hash:NT hash::: or user:LM hash.");
+            System.exit(0);
+        }
+        int bruteLength = args.length >= 3 ? Integer.parseInt(args[2]) : HALF_LENGTH;
+        int threads = args.length == 4 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        if(bruteLength < 0 || bruteLength > HALF_LENGTH || threads < 1) {
+            System.out.println("Expected a max brute force length of 0 to " + HALF_LENGTH + " and at least 1 thread");
+            System.exit(0);
+        }
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(Paths.get(args[1]), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.out.println("Could not read " + args[1] + " (" + e.getMessage() + ")");
+            System.out.println("Exiting...");
+            System.exit(0);
+            return;
+        }
+        LmCrack crack = new LmCrack(lines);
+        List<String> dict = PasswordCrack.buildDictionary(Collections.emptyList(), args[0], false);
+        long start = System.currentTimeMillis();
+        crack.crack(dict, bruteLength, threads);
+        System.out.println("Cracked " + crack.crackedUsers.get() + " of " + crack.users() + " users in "
+                + (System.currentTimeMillis() - start) + " ms");
+        System.exit(0);
+    }
+}
@@ -0,0 +1,69 @@
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.ToIntFunction;
+
+/**
+ * Feeds cracked passwords back as dictionary words. Users reuse passwords (and variants of them), so every
+ * newly cracked plaintext gets all the mangle strategies run on it ahead of the ongoing deep mangles or brute
+ * force: the cracking threads call <code>drain</code> before every candidate they test, so the first of them to
+ * get there runs the pending plaintexts before going on with its own work. Every plaintext is only fed back once.
+ *
+ * @author Antonio
+ *
+ */
+class Loopback {
+    private final Set<String> seen = ConcurrentHashMap.newKeySet();
+    private final Queue<String> pending = new ConcurrentLinkedQueue<>();
+    //one thread drains at a time, and the candidates of a drain do not start another one
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final ToIntFunction<String> tester;
+    private final RuleStats stats;
+
+    /**
+     * Creates the loopback.
+     * @param tester receives every candidate made from the cracked passwords
+     * @param stats the rule statistics to count the candidates in, or <code>null</code>
+     */
+    Loopback(ToIntFunction<String> tester, RuleStats stats) {
+        this.tester = tester;
+        this.stats = stats;
+    }
+
+    /**
+     * Feeds the given cracked password back, unless it has been fed back before. It is run by the next
+     * <code>drain</code>.
+     * @param plaintext the cracked password
+     */
+    void offer(String plaintext) {
+        if(this.seen.add(plaintext))
+            this.pending.add(plaintext);
+    }
+
+    /**
+     * Runs the mangle strategies on the pending cracked passwords on this thread, returns at once if there are
+     * none or another thread is running them. Cheap enough to call before every candidate.
+     */
+    void drain() {
+        if(this.pending.isEmpty() || !this.draining.compareAndSet(false, true))
+            return;
+        //the drain can be in the middle of a word of this thread
+        Set<String> word = this.stats == null ? null : this.stats.suspendWord();
+        try {
+            String plaintext;
+            while((plaintext = this.pending.poll()) != null) {
+                List<String> words = Collections.singletonList(plaintext);
+                for(int strategy = 0; strategy < PasswordCrack.STRATEGIES; strategy++)
+                    PasswordCrack.runStrategy(strategy, words, 0, 1, 1, 12, this.tester, this.stats);
+            }
+        } finally {
+            if(this.stats != null)
+                this.stats.resumeWord(word);
+            this.draining.set(false);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * MD5-crypt (<code>$1$salt$hash</code>) and SHA-512-crypt (<code>$6$[rounds=n$]salt$hash</code>), the hashes of
+ * modern shadow files. Both are slow on purpose (1000 and by default 5000 rounds of digests), so every thread
+ * has its own engine with its own <code>MessageDigest</code>s and buffers, and the rounds digest into the same
+ * buffers instead of allocating. Candidates are compared as raw digests against the decoded hash, so a
+ * candidate is never encoded either.
+ *
+ * @author Antonio
+ *
+ */
+class ModernCrypt {
+    static final int MD5_ROUNDS = 1000;
+    static final int SHA512_DEFAULT_ROUNDS = 5000;
+    static final int SHA512_MIN_ROUNDS = 1000;
+    static final int SHA512_MAX_ROUNDS = 999999999;
+    static final int MD5_MAX_SALT = 8;
+    static final int SHA512_MAX_SALT = 16;
+    private static final String ITOA64 = "./0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+    private static final byte[] MD5_MAGIC = "$1$".getBytes(StandardCharsets.US_ASCII);
+
+    //the digest bytes in the order they are encoded, three bytes to four chars (the last to two chars)
+    private static final int[] MD5_ORDER = {0, 6, 12, 1, 7, 13, 2, 8, 14, 3, 9, 15, 4, 10, 5, 11};
+    private static final int[] SHA512_ORDER = new int[64];
+    static {
+        for(int i = 0; i < 21; i++) {
+            int[] triple = {i, i + 21, i + 42};
+            for(int j = 0; j < 3; j++)
+                SHA512_ORDER[i * 3 + j] = triple[(j + i) % 3];
+        }
+        SHA512_ORDER[63] = 63;
+    }
+
+    private static final ThreadLocal<ModernCrypt> ENGINES = ThreadLocal.withInitial(ModernCrypt::new);
+
+    private final MessageDigest md5;
+    private final MessageDigest sha512;
+    private final byte[] md5Digest = new byte[16];
+    private final byte[] sha512Digest = new byte[64];
+    private final byte[] alternate = new byte[64];
+    private byte[] password = new byte[64];
+    private byte[] p = new byte[64];
+    private final byte[] s = new byte[SHA512_MAX_SALT];
+    private int passwordLength;
+
+    private ModernCrypt() {
+        try {
+            this.md5 = MessageDigest.getInstance("MD5");
+            this.sha512 = MessageDigest.getInstance("SHA-512");
+        } catch (NoSuchAlgorithmException e) {
+            //every Java platform has MD5 and SHA-512
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Hashes the word with the calling thread's engine.
+     * @param algorithm <code>User.MD5</code> or <code>User.SHA512</code>
+     * @param salt the salt (without the $ signs and rounds)
+     * @param rounds the rounds (only for SHA-512)
+     * @param word the word
+     * @return the raw digest, in a buffer of the calling thread that the next call overwrites
+     */
+    static byte[] digest(int algorithm, byte[] salt, int rounds, String word) {
+        ModernCrypt engine = ENGINES.get();
+        engine.setPassword(word);
+        try {
+            return algorithm == User.MD5 ? engine.md5Crypt(salt) : engine.sha512Crypt(salt, rounds);
+        } catch (DigestException e) {
+            //the buffers always fit the digests
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void setPassword(String word) {
+        int length = word.length();
+        boolean ascii = true;
+        for(int i = 0; i < length && ascii; i++)
+            ascii = word.charAt(i) < 0x80;
+        if(!ascii) {
+            byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, this.password, 0, bytes.length);
+            this.passwordLength = bytes.length;
+            return;
+        }
+        ensure(length);
+        for(int i = 0; i < length; i++)
+            this.password[i] = (byte) word.charAt(i);
+        this.passwordLength = length;
+    }
+
+    private void ensure(int length) {
+        if(this.password.length < length) {
+            this.password = new byte[length];
+            this.p = new byte[length];
+        }
+    }
+
+    private byte[] md5Crypt(byte[] salt) throws DigestException {
+        MessageDigest md = this.md5;
+        byte[] pw = this.password;
+        int length = this.passwordLength;
+        int saltLength = Math.min(salt.length, MD5_MAX_SALT);
+        byte[] digest = this.md5Digest;
+
+        md.update(pw, 0, length);
+        md.update(salt, 0, saltLength);
+        md.update(pw, 0, length);
+        md.digest(this.alternate, 0, 16);
+
+        md.update(pw, 0, length);
+        md.update(MD5_MAGIC, 0, MD5_MAGIC.length);
+        md.update(salt, 0, saltLength);
+        for(int left = length; left > 0; left -= 16)
+            md.update(this.alternate, 0, Math.min(left, 16));
+        for(int i = length; i != 0; i >>>= 1) {
+            if((i & 1) != 0)
+                md.update((byte) 0);
+            else
+                md.update(pw, 0, 1);
+        }
+        md.digest(digest, 0, 16);
+
+        for(int round = 0; round < MD5_ROUNDS; round++) {
+            if((round & 1) != 0)
+                md.update(pw, 0, length);
+            else
+                md.update(digest, 0, 16);
+            if(round % 3 != 0)
+                md.update(salt, 0, saltLength);
+            if(round % 7 != 0)
+                md.update(pw, 0, length);
+            if((round & 1) != 0)
+                md.update(digest, 0, 16);
+            else
+                md.update(pw, 0, length);
+            md.digest(digest, 0, 16);
+        }
+        return digest;
+    }
+
+    private byte[] sha512Crypt(byte[] salt, int rounds) throws DigestException {
+        MessageDigest md = this.sha512;
+        byte[] pw = this.password;
+        int length = this.passwordLength;
+        int saltLength = Math.min(salt.length, SHA512_MAX_SALT);
+        byte[] digest = this.sha512Digest;
+        byte[] alternate = this.alternate;
+
+        //B
+        md.update(pw, 0, length);
+        md.update(salt, 0, saltLength);
+        md.update(pw, 0, length);
+        md.digest(alternate, 0, 64);
+
+        //A
+        md.update(pw, 0, length);
+        md.update(salt, 0, saltLength);
+        int left = length;
+        for(; left > 64; left -= 64)
+            md.update(alternate, 0, 64);
+        md.update(alternate, 0, left);
+        for(int i = length; i > 0; i >>>= 1) {
+            if((i & 1) != 0)
+                md.update(alternate, 0, 64);
+            else
+                md.update(pw, 0, length);
+        }
+        md.digest(digest, 0, 64);
+
+        //P, from DP
+        for(int i = 0; i < length; i++)
+            md.update(pw, 0, length);
+        md.digest(alternate, 0, 64);
+        for(int i = 0; i < length; i++)
+            this.p[i] = alternate[i % 64];
+
+        //S, from DS
+        for(int i = 0; i < 16 + (digest[0] & 0xff); i++)
+            md.update(salt, 0, saltLength);
+        md.digest(alternate, 0, 64);
+        System.arraycopy(alternate, 0, this.s, 0, saltLength);
+
+        for(int round = 0; round < rounds; round++) {
+            if((round & 1) != 0)
+                md.update(this.p, 0, length);
+            else
+                md.update(digest, 0, 64);
+            if(round % 3 != 0)
+                md.update(this.s, 0, saltLength);
+            if(round % 7 != 0)
+                md.update(this.p, 0, length);
+            if((round & 1) != 0)
+                md.update(digest, 0, 64);
+            else
+                md.update(this.p, 0, length);
+            md.digest(digest, 0, 64);
+        }
+        return digest;
+    }
+
+    /**
+     * Decodes the hash part of an MD5-crypt or SHA-512-crypt hash to its raw digest.
+     * @param hash the hash part (22 or 86 chars)
+     * @param algorithm <code>User.MD5</code> or <code>User.SHA512</code>
+     * @return the raw digest
+     * @throws IllegalArgumentException if the hash has the wrong length or chars
+     */
+    static byte[] decode(String hash, int algorithm) {
+        int[] order = algorithm == User.MD5 ? MD5_ORDER : SHA512_ORDER;
+        if(hash.length() != (order.length * 4 + 2) / 3)
+            throw new IllegalArgumentException("Expected " + (order.length * 4 + 2) / 3 + " chars of hash, received: " + hash);
+        byte[] digest = new byte[order.length];
+        for(int group = 0, c = 0; group * 3 < order.length; group++) {
+            int bytes = Math.min(3, order.length - group * 3);
+            int chars = bytes == 3 ? 4 : 2;
+            int value = 0;
+            for(int i = 0; i < chars; i++) {
+                int index = ITOA64.indexOf(hash.charAt(c++));
+                if(index < 0)
+                    throw new IllegalArgumentException("Unexpected char in hash: " + hash);
+                value |= index << 6 * i;
+            }
+            //the first byte of a group is the most significant
+            for(int i = 0; i < bytes; i++)
+                digest[order[group * 3 + i]] = (byte) (value >>> 8 * (bytes - 1 - i));
+        }
+        return digest;
+    }
+
+    /**
+     * Hashes the word, for checking the engines against other implementations.
+     * @param args args[0]: the salt in the form <code>$1$salt$</code> or <code>$6$[rounds=n$]salt$</code>.
+     * args[1]: the word.
+     */
+    public static void main(String[] args) {
+        if(args.length != 2) {
+            System.out.println("Expects arguments in the form: <$1$salt$ or $6$[rounds=n$]salt$> <word>");
+            System.exit(0);
+        }
+        //any hash of the right length, only the salt is used
+        char[] hash = new char[args[0].startsWith("$1$") ? 22 : 86];
+        Arrays.fill(hash, '.');
+        User user = new User("check", args[0] + new String(hash));
+        byte[] digest = digest(user.algorithm, user.cryptSalt, user.rounds, args[1]);
+        int[] order = user.algorithm == User.MD5 ? MD5_ORDER : SHA512_ORDER;
+        StringBuilder sb = new StringBuilder(user.salt);
+        for(int group = 0; group * 3 < order.length; group++) {
+            int bytes = Math.min(3, order.length - group * 3);
+            int value = 0;
+            for(int i = 0; i < bytes; i++)
+                value = value << 8 | (digest[order[group * 3 + i]] & 0xff);
+            for(int i = 0; i < (bytes == 3 ? 4 : 2); i++, value >>>= 6)
+                sb.append(ITOA64.charAt(value & 0x3f));
+        }
+        System.out.println(sb);
+    }
+}
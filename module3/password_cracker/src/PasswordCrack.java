@@ -1,78 +1,75 @@
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
 
 /**
  * Creates possible passwords from a given dictionary, jcrypts them with the users' salt, and tries to crack all the passwords.
  * Mangles up to 3 times (and mangles for append and prepend mangles) before going for a brute force attempt.
+ * Every cracked password is fed back (see <code>Loopback</code>) to crack other users reusing it or a variant of it.
  *
  * @author Antonio
  *
  */
 public class PasswordCrack {
     
-    private class User {
-        private String username;
-        private String fullName;
-        private String firstName;
-        private String lastName;
-        private String middleName;
-        @SuppressWarnings("unused")
-        private String password;
-        private String salt;
-        private String encryptedPasswordData;
-        
-        User (String userInfo){    
-            String[] info = userInfo.split(":");
-            if(info.length != 7) {
-                System.out.println("Wrong format for user info!");
-                System.out.println("Expected: account:encrypted password data:uid:gid:GCOS-field:homedir:shell");
-                System.out.println("Received: " + userInfo);
-                System.out.println("Exiting...");
-                System.exit(0);
-            }
-            
-            this.username = info[0];
-            
-            this.encryptedPasswordData = info[1];
-            if(this.encryptedPasswordData.length() != 13) {
-                System.out.println("Wrong format for encrypted password data!");
-                System.out.println("Expected 13 characters (2 for salt and 11 for password encryption).");
-                System.out.println("Received: " + encryptedPasswordData + " for: " + username);
-                System.out.println("Exiting...");
-                System.exit(0);
-            }
-            
-            this.salt = this.encryptedPasswordData.substring(0, 2);
-            this.password = this.encryptedPasswordData.substring(2);
-            
-            this.fullName = info[4];
-            
-            String[] names = this.fullName.split(" ");
-            this.firstName = names.length > 0 ? names[0] : null;
-            if(this.firstName != null)
-                if(this.firstName.charAt(this.firstName.length() - 1) == '.')
-                    this.firstName = this.firstName.substring(0, this.firstName.length() - 1);
-            this.middleName = names.length == 3 ? names[1] : null;
-            if(this.middleName != null)
-                if(this.middleName.charAt(this.middleName.length() - 1) == '.')
-                    this.middleName = this.middleName.substring(0, this.middleName.length() - 1);
-            if(names.length > 1)
-                this.lastName = names.length == 3 ? names[2] : names[1];
-            
-        }
-    }
+    static final int NO_MANGLE = 0;
+    static final int ONE_MANGLE = 1;
+    static final int TWO_MANGLE = 2;
+    static final int THREE_MANGLE = 3;
+    static final int PREPEND_APPEND = 4;
+    static final int REVERSE_PREPEND_APPEND = 5;
+    static final int STRATEGIES = 6;
+    static final String[] STRATEGY_NAMES = {
+            "no mangle", "one mangle", "two mangle", "three mangle", "prepend append", "reverse prepend append"
+    };
+    //number of candidates a word gives in every strategy (roughly)
+    static final long[] CANDIDATES_PER_WORD = {1, 12, 144, 1728, 1612, 1612};
+    //bump when the mangles change, so that audits run the changed rules again
+    static final int RULES_VERSION = 1;
     
-    private List<User> users;
+    private TargetSet users;
+    private boolean batch;
     private List<String> dict;
+    private PotFile pot;
+    private boolean targeted;
+    private boolean casePermutations;
+    private Leetspeak leetspeak;
+    private Combinator combinator;
+    private String combinatorVersion;
+    private Prince prince;
+    private Prince.Progress princeProgress;
+    private long princeSaved = System.currentTimeMillis();
+    private AuditLedger audit;
+    private String rainbowDirectory;
+    private int generators;
+    private int crypters;
+    private final List<TargetSet> auditTargets = new CopyOnWriteArrayList<>();
+    private long auditSaved = System.currentTimeMillis();
+    private Loopback loopback;
+    private RuleStats ruleStats;
+    private String ruleStatsFile;
+    private ResultSink results;
+    private final long startTime = System.currentTimeMillis();
+    private final LongAdder candidates = new LongAdder();
     
     /**
      * Creates the password cracker and tries to crack the passwords by trying to mangling words in the dictionary. If the 
@@ -81,20 +78,103 @@ public class PasswordCrack {
      * @param userInfoFile
      */
     public PasswordCrack(String dictionaryFile, String userInfoFile) {
-        this.users = new CopyOnWriteArrayList<>();
-        readInUsers(userInfoFile);
+        this(dictionaryFile, Collections.singletonList(userInfoFile), new CrackOptions());
+    }
+    
+    /**
+     * Creates the password cracker with the given options (see <code>CrackOptions</code>) and starts cracking. The
+     * users of all the password files (or directories of password files) are cracked in one pass, and when there is
+     * more than one password file every crack is reported as <code>host:account:password</code>, where host is the
+     * name of the password file.
+     * @param dictionaryFile
+     * @param userInfoFiles
+     * @param options
+     */
+    PasswordCrack(String dictionaryFile, List<String> userInfoFiles, CrackOptions options) {
+        List<User> users = readInUsers(userInfoFiles);
+        this.batch = userInfoFiles.size() > 1 || new File(userInfoFiles.get(0)).isDirectory();
+        this.users = new TargetSet(users);
+        if(options.ruleStats) {
+            this.ruleStats = new RuleStats(() -> this.users.groups().size());
+            this.ruleStatsFile = options.ruleStatsFile;
+        }
+        this.loopback = new Loopback(word -> compareWordToPass(word, "loopback"), this.ruleStats);
+        try {
+            this.results = new ResultSink(options.resultsFile, options.resultsFormat, this.batch);
+        } catch (IOException e) {
+            System.out.println("Could not open the results file: " + options.resultsFile + " (" + e.getMessage() + ")");
+            System.out.println("Exiting...");
+            System.exit(0);
+        }
+        if(options.potFile != null)
+            resolveFromPot(options.potFile);
         if(this.users.isEmpty()) {
             //System.out.println("No users added. Nothing to crack.");
             //System.out.println("Exiting...");
-            System.exit(0);
+            exit();
         }
         
-        this.dict = new ArrayList<>();
-        addUserInfoNamesToDict();
-        addCommonPasswordsToDict();
-        getDictionary(dictionaryFile);
+        this.targeted = options.targeted;
+        this.casePermutations = options.casePermutations;
+        if(options.leetspeak)
+            this.leetspeak = new Leetspeak(options.leetTable, options.leetMax);
+        this.dict = buildDictionary(this.users.users(), dictionaryFile, !this.targeted);
+        if(options.combinatorFile != null) {
+            //true combines the dictionary with itself
+            List<String> right = this.dict;
+            if(!options.combinatorFile.equals("true")) {
+                right = new ArrayList<>();
+                getDictionary(options.combinatorFile, right);
+            }
+            this.combinator = new Combinator(right);
+            this.combinatorVersion = Long.toHexString(AuditLedger.unit("", right, 0, right.size()));
+        }
+        if(options.princeElements > 0) {
+            this.prince = new Prince(this.dict, options.princeElements);
+            try {
+                this.princeProgress = new Prince.Progress(options.princeProgressFile, this.prince.version());
+            } catch (IOException | NumberFormatException e) {
+                System.out.println("Could not read the PRINCE progress: " + options.princeProgressFile + " (" + e.getMessage() + ")");
+                System.out.println("Exiting...");
+                System.exit(0);
+            }
+            //an interrupted run continues where it was
+            if(options.princeProgressFile != null)
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> savePrince(true)));
+        }
+        this.rainbowDirectory = options.rainbowDirectory;
+        this.generators = options.generators;
+        this.crypters = options.ruleStats ? 0 : options.crypters;
+        if(options.auditFile != null) {
+            try {
+                this.audit = new AuditLedger(options.auditFile);
+            } catch (IOException e) {
+                System.out.println("Could not open the audit ledger: " + options.auditFile + " (" + e.getMessage() + ")");
+                System.out.println("Exiting...");
+                System.exit(0);
+            }
+            //an interrupted audit keeps the work it finished
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> saveAudit(true)));
+        }
+        
+        if(options.budgetSeconds > 0) {
+            //the planner decides what runs (and brute force is one of the strategies)
+            //the targeted pass is cheap and cracks the users it can before the planner shares out the budget
+            if(this.targeted)
+                targetedCrack().join();
+            new AttackPlanner(this.dict, this::compareWordToPass, this.users::isEmpty, () -> this.users.groups().size(),
+                    Runtime.getRuntime().availableProcessors(), this.ruleStats).run(options.budgetSeconds * 1000);
+            exit();
+        }
+        
+        if(this.audit != null) {
+            auditedCrack();
+            exit();
+        }
         
         passwordCrack();
+        if(!this.users.isEmpty() && this.rainbowDirectory != null)
+            rainbowLookup();
         if(!this.users.isEmpty()) {
             //should always come here if passwordCrack failed
             startBrute();
@@ -103,107 +183,214 @@ public class PasswordCrack {
         //Brute failed for 8 characters (alphanumerical chars)
     }
     
-    private void addCommonPasswordsToDict() {
+    //users whose (unchanged) password data was cracked in an earlier run need no crypt at all
+    private void resolveFromPot(String potFile) {
+        try {
+            this.pot = new PotFile(potFile);
+        } catch (IOException e) {
+            System.out.println("Could not open the pot file: " + potFile + " (" + e.getMessage() + ")");
+            System.out.println("Exiting...");
+            System.exit(0);
+        }
+        List<User> remove = new ArrayList<>();
+        for(User user : this.users.users()) {
+            String plaintext = this.pot.lookup(user.encryptedPasswordData);
+            if(plaintext != null) {
+                report(user, plaintext, "pot");
+                remove.add(user);
+            }
+        }
+        for(User user : remove)
+            this.users.remove(user);
+    }
+    
+    private void exit() {
+        //the passwords cracked by the last candidates
+        if(!this.users.isEmpty())
+            this.loopback.drain();
+        this.results.close();
+        if(this.ruleStats != null)
+            this.ruleStats.report(this.ruleStatsFile);
+        if(this.pot != null)
+            this.pot.close();
+        if(this.audit != null)
+            saveAudit(true);
+        if(this.princeProgress != null)
+            savePrince(true);
+        System.exit(0);
+    }
+    
+    /**
+     * Builds the dictionary the same way for every cracker: names from the users' info, common
+     * passwords and then the words of the given dictionary file.
+     * @param users the users to take names from
+     * @param dictionaryFile the path to the dictionary file
+     * @return the dictionary
+     */
+    static List<String> buildDictionary(List<User> users, String dictionaryFile) {
+        return buildDictionary(users, dictionaryFile, true);
+    }
+    
+    /**
+     * Builds the dictionary, with or without the names from the users' info.
+     * @param users the users to take names from
+     * @param dictionaryFile the path to the dictionary file
+     * @param userInfoNames if the names from the users' info should be in the dictionary
+     * @return the dictionary
+     */
+    static List<String> buildDictionary(List<User> users, String dictionaryFile, boolean userInfoNames) {
+        List<String> words = new ArrayList<>();
+        getDictionary(dictionaryFile, words);
+        return buildDictionary(users, words, userInfoNames);
+    }
+    
+    /**
+     * Builds the dictionary from words that are already read.
+     * @param users the users to take names from
+     * @param words the words of the dictionary
+     * @param userInfoNames if the names from the users' info should be in the dictionary
+     * @return the dictionary
+     */
+    static List<String> buildDictionary(List<User> users, Iterable<String> words, boolean userInfoNames) {
+        List<String> dict = new ArrayList<>();
+        if(userInfoNames)
+            addUserInfoNamesToDict(users, dict);
+        addCommonPasswordsToDict(dict);
+        for(String word : words)
+            dict.add(word);
+        return dict;
+    }
+    
+    private static void addCommonPasswordsToDict(List<String> dict) {
         String[] commonPasswords = {
         		"111111", "222222", "333333", "444444", "555555", "666666", "777777",
         		"888888", "999999", "123123", "123456", "1234567890", "qwerty", "starwars",
         		"asdfg", "zxcvbnm", "1q2w3e", "iloveyou", "12345", "12345678", "1234567", "password"
         };
         for(String pw : commonPasswords)
-        	this.dict.add(pw);
+        	dict.add(pw);
     }
     
-    private void addUserInfoNamesToDict() {
-        for(User user : this.users) {
-            this.dict.add(user.username);
-            
-            if(user.firstName != null) {
-                this.dict.add(user.firstName);
-                this.dict.add(user.firstName + user.firstName);
-                this.dict.add(user.username + user.firstName);
-                this.dict.add(user.firstName + user.username);
-            }
-                
-            if(user.middleName != null) {
-                this.dict.add(user.middleName);
-                this.dict.add(user.middleName + user.middleName);
-                this.dict.add(user.username + user.middleName);
-                this.dict.add(user.middleName + user.username);
-            }
-                
-            if(user.lastName != null) {
-                this.dict.add(user.lastName);
-                this.dict.add(user.lastName + user.lastName);
-                this.dict.add(user.username + user.lastName);
-                this.dict.add(user.lastName + user.username);
-            }
-            
-            if(user.firstName != null && user.middleName != null && user.lastName != null) {
-                this.dict.add(user.firstName + user.middleName + user.lastName);
-                this.dict.add(user.firstName + user.lastName + user.middleName);
-                this.dict.add(user.lastName + user.firstName + user.middleName);
-                this.dict.add(user.lastName + user.middleName + user.firstName);
-                this.dict.add(user.middleName + user.firstName + user.lastName);
-                this.dict.add(user.middleName + user.lastName + user.firstName);
-            }
-            
-            if(user.firstName != null && user.lastName != null) {
-                this.dict.add(user.firstName + user.lastName);
-                this.dict.add(user.lastName + user.firstName);
-            }
+    private static void addUserInfoNamesToDict(List<User> users, List<String> dict) {
+        for(User user : users)
+            dict.addAll(userInfoNames(user));
+    }
+    
+    /**
+     * Makes the candidates of a user's own info: the username and the first, middle and last name
+     * combinations.
+     * @param user the user
+     * @return the candidates
+     */
+    static List<String> userInfoNames(User user) {
+        List<String> dict = new ArrayList<>();
+        dict.add(user.username);
+        
+        if(user.firstName != null) {
+            dict.add(user.firstName);
+            dict.add(user.firstName + user.firstName);
+            dict.add(user.username + user.firstName);
+            dict.add(user.firstName + user.username);
+        }
             
-            if(user.firstName != null && user.middleName != null) {
-                this.dict.add(user.firstName + user.middleName);
-                this.dict.add(user.middleName + user.firstName);
-            }
+        if(user.middleName != null) {
+            dict.add(user.middleName);
+            dict.add(user.middleName + user.middleName);
+            dict.add(user.username + user.middleName);
+            dict.add(user.middleName + user.username);
+        }
             
-            if(user.middleName != null && user.lastName != null) {
-                this.dict.add(user.middleName + user.lastName);
-                this.dict.add(user.lastName + user.middleName);
-            }    
+        if(user.lastName != null) {
+            dict.add(user.lastName);
+            dict.add(user.lastName + user.lastName);
+            dict.add(user.username + user.lastName);
+            dict.add(user.lastName + user.username);
+        }
+        
+        if(user.firstName != null && user.middleName != null && user.lastName != null) {
+            dict.add(user.firstName + user.middleName + user.lastName);
+            dict.add(user.firstName + user.lastName + user.middleName);
+            dict.add(user.lastName + user.firstName + user.middleName);
+            dict.add(user.lastName + user.middleName + user.firstName);
+            dict.add(user.middleName + user.firstName + user.lastName);
+            dict.add(user.middleName + user.lastName + user.firstName);
+        }
+        
+        if(user.firstName != null && user.lastName != null) {
+            dict.add(user.firstName + user.lastName);
+            dict.add(user.lastName + user.firstName);
+        }
+        
+        if(user.firstName != null && user.middleName != null) {
+            dict.add(user.firstName + user.middleName);
+            dict.add(user.middleName + user.firstName);
+        }
+        
+        if(user.middleName != null && user.lastName != null) {
+            dict.add(user.middleName + user.lastName);
+            dict.add(user.lastName + user.middleName);
         }
+        return dict;
     }
     
-    private void readInUsers(String userFileName) {
-        List<String> userInfoLines = new ArrayList<>();
-        try {
-            BufferedReader reader = new BufferedReader(new FileReader(userFileName));
-            String userInfoLine = null;
-            try {
-                while((userInfoLine = reader.readLine()) != null) {
-                    userInfoLines.add(userInfoLine);
+    /**
+     * Reads in all users of the given password files, a directory stands for all the files in it. Every user's host
+     * is the name of the file it was read from.
+     * @param userFileNames the paths to the password files or directories
+     * @return the users
+     */
+    static List<User> readInUsers(List<String> userFileNames) {
+        List<User> users = new ArrayList<>();
+        for(String userFileName : userFileNames) {
+            File file = new File(userFileName);
+            File[] files = file.isDirectory() ? file.listFiles(File::isFile) : new File[] {file};
+            if(files == null)
+                files = new File[0];
+            Arrays.sort(files);
+            for(File userFile : files) {
+                for(User user : readInUsers(userFile.getPath())) {
+                    user.host = userFile.getName();
+                    users.add(user);
                 }
-            } catch (IOException e) {
-                System.out.println("Got an IO exception. Could not read line in file: " + userFileName);
-                System.out.println("Check file permissions!");
-                System.exit(0);
-            }
-            try {
-                reader.close();
-            } catch (IOException e) {
-                System.out.println("Got an IO exception when trying to close file: " + userFileName);
-                System.out.println("Exiting..."); //or continue?
-                System.exit(0);
             }
-        } catch (FileNotFoundException e) {
+        }
+        return users;
+    }
+    
+    /**
+     * Reads in all users of the given password file (in parallel, see <code>UserFileParser</code>). Malformed lines
+     * are skipped and counted.
+     * @param userFileName the path to the password file
+     * @return the users
+     */
+    static List<User> readInUsers(String userFileName) {
+        UserFileParser.Result result = null;
+        try {
+            result = UserFileParser.parse(Paths.get(userFileName));
+        } catch (NoSuchFileException e) {
             System.out.println("The file: " + userFileName + ", was not found or could not be found!");
             System.out.println("Check the path and file permissions.");
             System.out.println("Exiting...");
             System.exit(0);
+        } catch (IOException e) {
+            System.out.println("Got an IO exception. Could not read file: " + userFileName);
+            System.out.println("Check file permissions!");
+            System.exit(0);
         }
-        
-        for(String userInfoLine : userInfoLines)
-            this.users.add(new User(userInfoLine));
-        
+        if(result.skipped > 0) {
+            System.out.println("Skipped " + result.skipped + " malformed lines of " + userFileName
+                    + ", the first: " + result.firstError);
+        }
+        return result.users;
     }
     
-    private void getDictionary(String dictionaryFileName) {
+    private static void getDictionary(String dictionaryFileName, List<String> dict) {
         try {
             BufferedReader reader = new BufferedReader(new FileReader(dictionaryFileName));
             String passwordLine = null;
             try {
                 while((passwordLine = reader.readLine()) != null) {
-                    this.dict.add(passwordLine);
+                    dict.add(passwordLine);
                 }
             } catch (IOException e) {
                 System.out.println("Got an IO exception. Could not read line in file: " + dictionaryFileName);
@@ -226,96 +413,420 @@ public class PasswordCrack {
     }
     
     private void passwordCrack() {
-        //No mangle
-        CompletableFuture<Void> noMangle = CompletableFuture.runAsync(() -> {
-            for(String str : this.dict)
-                compareWordToPass(str);
-        });
+        List<CompletableFuture<Void>> strategies = new ArrayList<>();
+        if(this.targeted)
+            strategies.add(targetedCrack());
+        CandidatePipeline pipeline = null;
+        ExecutorService generators = null;
+        if(this.crypters > 0) {
+            pipeline = new CandidatePipeline(this.crypters, 2 * (this.generators + this.crypters), this::compareKeyToPass);
+            generators = Executors.newFixedThreadPool(this.generators);
+        }
+        for(int strategy = 0; strategy < STRATEGIES; strategy++) {
+            final int s = strategy;
+            if(pipeline == null) {
+                strategies.add(CompletableFuture.runAsync(() -> 
+                    runStrategy(s, this.dict, 0, this.dict.size(), 1, 12, word -> compareWordToPass(word, STRATEGY_NAMES[s]), this.ruleStats)));
+                continue;
+            }
+            //split over the generator threads, cheapest strategy first
+            final CandidatePipeline p = pipeline;
+            int chunk = (this.dict.size() + this.generators - 1) / this.generators;
+            for(int from = 0; from < this.dict.size(); from += chunk) {
+                final int start = from;
+                final int end = Math.min(this.dict.size(), from + chunk);
+                strategies.add(CompletableFuture.runAsync(() -> {
+                    runStrategy(s, this.dict, start, end, 1, 12, word -> p.offer(word, STRATEGY_NAMES[s]));
+                    p.flush();
+                }, generators));
+            }
+        }
+        if(this.casePermutations) {
+            strategies.add(CompletableFuture.runAsync(() -> {
+                int[] block = new int[2];
+                CasePermutations.run(this.dict, 0, this.dict.size(), 
+                        (schedule, candidate) -> compareKeyToPass(schedule, candidate, block, "case permutation"));
+            }));
+        }
+        if(this.leetspeak != null) {
+            //split over the cores, like brute force
+            int cores = Runtime.getRuntime().availableProcessors();
+            int chunk = (this.dict.size() + cores - 1) / cores;
+            for(int from = 0; from < this.dict.size(); from += chunk) {
+                final int start = from;
+                final int end = Math.min(this.dict.size(), from + chunk);
+                strategies.add(CompletableFuture.runAsync(() -> {
+                    int[] block = new int[2];
+                    this.leetspeak.run(this.dict, start, end, 
+                            (schedule, candidate) -> compareKeyToPass(schedule, candidate, block, "leetspeak"));
+                }));
+            }
+        }
+        if(this.combinator != null) {
+            int cores = Runtime.getRuntime().availableProcessors();
+            int chunk = (this.dict.size() + cores - 1) / cores;
+            for(int from = 0; from < this.dict.size(); from += chunk) {
+                final int start = from;
+                final int end = Math.min(this.dict.size(), from + chunk);
+                strategies.add(CompletableFuture.runAsync(() -> {
+                    int[] block = new int[2];
+                    this.combinator.run(this.dict, start, end, 
+                            (schedule, candidate) -> compareKeyToPass(schedule, candidate, block, "combinator"));
+                }));
+            }
+        }
+        if(this.prince != null) {
+            //every core takes the next block of chains until there are none left
+            for(int i = 0; i < Runtime.getRuntime().availableProcessors(); i++) {
+                strategies.add(CompletableFuture.runAsync(() -> {
+                    int[] block = new int[2];
+                    long start;
+                    while(!this.users.isEmpty() && (start = this.princeProgress.claim()) < this.prince.size()) {
+                        this.prince.run(start, start + Prince.BLOCK, 
+                                (schedule, candidate) -> compareKeyToPass(schedule, candidate, block, "prince"));
+                        this.princeProgress.finished(start);
+                        savePrince(false);
+                    }
+                }));
+            }
+        }
+        CompletableFuture.allOf(strategies.toArray(new CompletableFuture<?>[0])).join();
+        if(pipeline != null) {
+            pipeline.close();
+            generators.shutdown();
+        }
+    }
+    
+    //an attack over the words dict[from, to), against the given targets only
+    private interface ChunkAttack {
+        void run(TargetSet targets, int from, int to);
+    }
+    
+    /*
+     * The same attacks as passwordCrack and startBrute, but every chunk of the dictionary (see AuditLedger) is only
+     * run against the users that have not had it in an earlier audit, and brute force only against the users that
+     * have not had the length. What has been run is written to the ledger.
+     */
+    private void auditedCrack() {
+        //finished first, so the ledger only records units run against the users it left
+        if(this.targeted)
+            targetedCrack().join();
+        Map<String, ChunkAttack> attacks = new LinkedHashMap<>();
+        for(int strategy = 0; strategy < STRATEGIES; strategy++) {
+            final int s = strategy;
+            attacks.put(STRATEGY_NAMES[s] + "/" + RULES_VERSION, (targets, from, to) -> 
+                runStrategy(s, this.dict, from, to, 1, 12, word -> compareWordToPass(targets, word, STRATEGY_NAMES[s]), this.ruleStats));
+        }
+        if(this.casePermutations) {
+            attacks.put("case permutation/" + RULES_VERSION, (targets, from, to) -> {
+                int[] block = new int[2];
+                CasePermutations.run(this.dict, from, to, 
+                        (schedule, candidate) -> compareKeyToPass(targets, schedule, candidate, block, "case permutation"));
+            });
+        }
+        if(this.leetspeak != null) {
+            attacks.put("leetspeak/" + RULES_VERSION + "/" + this.leetspeak.version(), (targets, from, to) -> {
+                int[] block = new int[2];
+                this.leetspeak.run(this.dict, from, to, 
+                        (schedule, candidate) -> compareKeyToPass(targets, schedule, candidate, block, "leetspeak"));
+            });
+        }
+        if(this.combinator != null) {
+            attacks.put("combinator/" + RULES_VERSION + "/" + this.combinatorVersion, (targets, from, to) -> {
+                int[] block = new int[2];
+                this.combinator.run(this.dict, from, to, 
+                        (schedule, candidate) -> compareKeyToPass(targets, schedule, candidate, block, "combinator"));
+            });
+        }
         
-        CompletableFuture<Void> oneMangle = CompletableFuture.runAsync(() -> {
-          //One mangle
-            for(String str : this.dict) {
-                for(int i = 1; i <= 12; i++) {
-                    compareWordToPass(simpleMangleString(i, str));
-                }
+        int cores = Runtime.getRuntime().availableProcessors();
+        ExecutorService executorService = Executors.newFixedThreadPool(cores);
+        List<Callable<Object>> todo = new ArrayList<>();
+        List<int[]> chunks = AuditLedger.chunks(this.dict);
+        for(Map.Entry<String, ChunkAttack> attack : attacks.entrySet()) {
+            for(int[] chunk : chunks) {
+                todo.add(Executors.callable(() -> {
+                    long unit = AuditLedger.unit(attack.getKey(), this.dict, chunk[0], chunk[1]);
+                    List<User> users = new ArrayList<>();
+                    for(User user : this.users.users())
+                        if(!this.audit.isDone(user.encryptedPasswordData, unit))
+                            users.add(user);
+                    if(users.isEmpty())
+                        return;
+                    TargetSet targets = new TargetSet(users);
+                    this.auditTargets.add(targets);
+                    attack.getValue().run(targets, chunk[0], chunk[1]);
+                    this.auditTargets.remove(targets);
+                    //only the users the unit did not crack, a rerun has to crack the others again
+                    this.audit.done(targets.users(), unit);
+                    saveAudit(false);
+                }));
             }
-        });
+        }
+        try {
+            executorService.invokeAll(todo);
+        } catch (InterruptedException e) {
+            System.out.println("Got interrupted when trying to wait for all threads to finish...");
+            System.out.println("Exiting...");
+            System.exit(0);
+        }
         
-        //Two mangle
-        CompletableFuture<Void> twoMangle = CompletableFuture.runAsync(() -> {  
-            for(String str : this.dict) {
-                for(int i = 1; i <= 12; i++) {
+        if(!this.users.isEmpty() && this.rainbowDirectory != null)
+            rainbowLookup();
+        for(int length = 1; length <= 8 && !this.users.isEmpty(); length++) {
+            List<User> users = new ArrayList<>();
+            for(User user : this.users.users())
+                if(this.audit.bruteLength(user.encryptedPasswordData) < length)
+                    users.add(user);
+            if(users.isEmpty())
+                continue;
+            TargetSet targets = new TargetSet(users);
+            this.auditTargets.add(targets);
+            long candidates = (long) Math.pow(BRUTE_CHARS, length);
+            long slice = (candidates + cores - 1) / cores;
+            final int n = length;
+            todo = new ArrayList<>();
+            for(long from = 0; from < candidates; from += slice) {
+                final long start = from;
+                final long end = Math.min(candidates, from + slice);
+                todo.add(Executors.callable(() -> {
+                    char[] attempt = new char[n];
+                    for(long i = start; i < end && !targets.isEmpty(); i++) {
+                        bruteCandidate(i, attempt);
+                        compareWordToPass(targets, new String(attempt), "brute");
+                    }
+                }));
+            }
+            try {
+                executorService.invokeAll(todo);
+            } catch (InterruptedException e) {
+                System.out.println("Got interrupted when trying to wait for all threads to finish...");
+                System.out.println("Exiting...");
+                System.exit(0);
+            }
+            this.auditTargets.remove(targets);
+            this.audit.bruteDone(targets.users(), length);
+            saveAudit(false);
+        }
+        executorService.shutdown();
+    }
+    
+    //saves the ledger at most once a minute, unless forced
+    private synchronized void saveAudit(boolean force) {
+        if(!force && System.currentTimeMillis() - this.auditSaved < 60000)
+            return;
+        try {
+            this.audit.save();
+        } catch (IOException e) {
+            System.out.println("Could not save the audit ledger (" + e.getMessage() + ")");
+        }
+        this.auditSaved = System.currentTimeMillis();
+    }
+    
+    //saves the PRINCE progress at most once a minute, unless forced
+    private synchronized void savePrince(boolean force) {
+        if(!force && System.currentTimeMillis() - this.princeSaved < 60000)
+            return;
+        try {
+            this.princeProgress.save();
+        } catch (IOException e) {
+            System.out.println("Could not save the PRINCE progress (" + e.getMessage() + ")");
+        }
+        this.princeSaved = System.currentTimeMillis();
+    }
+    
+    //the users whose salt has a table (see RainbowTable) are looked up in it, every user on its own thread
+    private void rainbowLookup() {
+        ExecutorService executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        List<Callable<Object>> todo = new ArrayList<>();
+        for(TargetSet.SaltGroup group : this.users.groups()) {
+            if(group.algorithm != User.DES)
+                continue;
+            Path file = RainbowTable.tableFile(Paths.get(this.rainbowDirectory), group.salt);
+            if(!Files.exists(file))
+                continue;
+            RainbowTable table;
+            try {
+                table = RainbowTable.open(file);
+            } catch (IOException e) {
+                System.out.println("Could not open the rainbow table: " + file + " (" + e.getMessage() + ")");
+                continue;
+            }
+            for(User user : group.users) {
+                todo.add(Executors.callable(() -> {
+                    String plaintext = table.lookup(user.encryptedBlock);
+                    if(plaintext != null)
+                        cracked(Collections.singletonList(user), plaintext, "rainbow");
+                }));
+            }
+        }
+        try {
+            executorService.invokeAll(todo);
+        } catch (InterruptedException e) {
+            System.out.println("Got interrupted when trying to wait for all threads to finish...");
+            System.out.println("Exiting...");
+            System.exit(0);
+        }
+        executorService.shutdown();
+    }
+    
+    //every user's own names, with all mangle strategies, only against that user
+    //split over the cores like the other strategies, and every chunk runs the cheapest strategy on all its users first
+    private CompletableFuture<Void> targetedCrack() {
+        List<User> users = this.users.users();
+        int cores = Runtime.getRuntime().availableProcessors();
+        int chunk = (users.size() + cores - 1) / cores;
+        List<CompletableFuture<Void>> chunks = new ArrayList<>();
+        for(int from = 0; from < users.size(); from += chunk) {
+            List<User> part = users.subList(from, Math.min(users.size(), from + chunk));
+            chunks.add(CompletableFuture.runAsync(() -> {
+                List<List<String>> names = new ArrayList<>();
+                for(User user : part)
+                    names.add(userInfoNames(user));
+                for(int strategy = 0; strategy < STRATEGIES; strategy++) {
+                    for(int i = 0; i < part.size(); i++) {
+                        User user = part.get(i);
+                        List<String> words = names.get(i);
+                        if(this.users.contains(user))
+                            runStrategy(strategy, words, 0, words.size(), 1, 12, word -> compareWordToUser(user, word));
+                    }
+                }
+            }));
+        }
+        return CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0]));
+    }
+    
+    /**
+     * Runs one of the mangle strategies on the words <code>dict[from, to)</code> and hands every candidate
+     * to the given tester. For the (one, two and three) mangle strategies only the first mangles in
+     * <code>[ruleFrom, ruleTo]</code> are used, so that a strategy can be split by rules as well as by words.
+     * @param strategy one of the strategy constants (<code>NO_MANGLE</code>...<code>REVERSE_PREPEND_APPEND</code>)
+     * @param dict the dictionary
+     * @param from the first word (inclusive)
+     * @param to the last word (exclusive)
+     * @param ruleFrom the first mangle of the first level (inclusive, 1-12)
+     * @param ruleTo the last mangle of the first level (inclusive, 1-12)
+     * @param tester receives every candidate and returns the number of cracked users
+     */
+    static void runStrategy(int strategy, List<String> dict, int from, int to, int ruleFrom, int ruleTo, 
+            ToIntFunction<String> tester) {
+        runStrategy(strategy, dict, from, to, ruleFrom, ruleTo, tester, null);
+    }
+    
+    /**
+     * Runs one of the mangle strategies, see above, and counts every candidate for the mangle chain that
+     * made it in the given statistics (unless they are <code>null</code>).
+     */
+    static void runStrategy(int strategy, List<String> dict, int from, int to, int ruleFrom, int ruleTo, 
+            ToIntFunction<String> tester, RuleStats stats) {
+        switch (strategy) {
+        case NO_MANGLE:
+            for(int w = from; w < to; w++) {
+                startWord(stats);
+                test(tester, stats, 0, dict.get(w));
+            }
+            break;
+        case ONE_MANGLE:
+            for(int w = from; w < to; w++) {
+                startWord(stats);
+                String str = dict.get(w);
+                for(int i = ruleFrom; i <= ruleTo; i++) {
+                    test(tester, stats, RuleStats.chain(i, 0, 0), simpleMangleString(i, str));
+                }
+            }
+            break;
+        case TWO_MANGLE:
+            for(int w = from; w < to; w++) {
+                startWord(stats);
+                String str = dict.get(w);
+                for(int i = ruleFrom; i <= ruleTo; i++) {
                     String firstMangle = simpleMangleString(i, str);
                     for(int j = 1; j <= 12; j++) {
-                        compareWordToPass(simpleMangleString(j, firstMangle));
+                        test(tester, stats, RuleStats.chain(i, j, 0), simpleMangleString(j, firstMangle));
                     }
                 }
-                 
             }
-        });
-        
-      //Three mangle
-        CompletableFuture<Void> threeMangle = CompletableFuture.runAsync(() -> { 
-            for(String str : this.dict) {
-                for(int i = 1; i <= 12; i++) {
+            break;
+        case THREE_MANGLE:
+            for(int w = from; w < to; w++) {
+                startWord(stats);
+                String str = dict.get(w);
+                for(int i = ruleFrom; i <= ruleTo; i++) {
                     String firstMangle = simpleMangleString(i, str);
                     for(int j = 1; j <= 12; j++) {
                         String secondMangle = simpleMangleString(j, firstMangle);
                         for(int k = 1; k <= 12; k++) {
-                            compareWordToPass(simpleMangleString(k, secondMangle));
+                            test(tester, stats, RuleStats.chain(i, j, k), simpleMangleString(k, secondMangle));
                         }
                     }
-                }     
+                }
             }
-        });
-        
-        //Prepend and append (+ two mangle)
-        CompletableFuture<Void> prependAppend = CompletableFuture.runAsync(() -> {
-            for(String str : this.dict) {
+            break;
+        case PREPEND_APPEND:
+            //Prepend and append (+ two mangle)
+            for(int w = from; w < to; w++) {
+                startWord(stats);
+                String str = dict.get(w);
                 for(String prepended : prependOne(str))
-                    compareWordToPass(prepended);
+                    test(tester, stats, RuleStats.PREPEND, prepended);
                 for(String appended : appendOne(str))
-                    compareWordToPass(appended);
+                    test(tester, stats, RuleStats.APPEND, appended);
             }
-            for(String s : this.dict) {     
+            for(int w = from; w < to; w++) {
+                startWord(stats);
+                String s = dict.get(w);
                 for(String str : prependOne(s)) {
                     for(int i = 1; i <= 12; i++) {
-                        compareWordToPass(simpleMangleString(1, str));
+                        test(tester, stats, RuleStats.chain(RuleStats.PREPEND, 1, 0), simpleMangleString(1, str));
                     }
                 }
                 
                 for(String str : appendOne(s)) {
                     for(int i = 1; i <= 12; i++) {
-                        compareWordToPass(simpleMangleString(1, str));
+                        test(tester, stats, RuleStats.chain(RuleStats.APPEND, 1, 0), simpleMangleString(1, str));
                     }
-                }      
+                }
             }
-        });
-        
-        //three mangle append and prepend with reverse string (ultra slow)
-        CompletableFuture<Void> threeMangleAppendPrepend = CompletableFuture.runAsync(() -> { 
-            for(String s : this.dict) {
+            break;
+        case REVERSE_PREPEND_APPEND:
+            //three mangle append and prepend with reverse string (ultra slow)
+            for(int w = from; w < to; w++) {
+                startWord(stats);
+                String s = dict.get(w);
                 for(String str : prependOne(reverseString(s))) {
-                    compareWordToPass(str);
+                    test(tester, stats, RuleStats.chain(3, RuleStats.PREPEND, 0), str);
                     for(int i = 1; i <= 12; i++) {
-                        compareWordToPass(simpleMangleString(i, str));
+                        test(tester, stats, RuleStats.chain(3, RuleStats.PREPEND, i), simpleMangleString(i, str));
                     }  
                 }
                 
                 for(String str : appendOne(reverseString(s))) {
-                    compareWordToPass(str);
+                    test(tester, stats, RuleStats.chain(3, RuleStats.APPEND, 0), str);
                     for(int i = 1; i <= 12; i++) {
-                        compareWordToPass(simpleMangleString(i, str));
+                        test(tester, stats, RuleStats.chain(3, RuleStats.APPEND, i), simpleMangleString(i, str));
                     }
                 }
             }
-        });
-        
-        CompletableFuture.allOf(noMangle, oneMangle, twoMangle, threeMangle, prependAppend, threeMangleAppendPrepend).join();
+            break;
+        default:
+            break;
+        }
+    }
+    
+    private static void startWord(RuleStats stats) {
+        if(stats != null)
+            stats.startWord();
+    }
+    
+    private static void test(ToIntFunction<String> tester, RuleStats stats, int chain, String word) {
+        if(stats == null)
+            tester.applyAsInt(word);
+        else
+            stats.test(chain, word, tester);
     }
     
     //currently support 12 different "simple" mangles
-    private String simpleMangleString(int mangleIdx, String word) {
+    static String simpleMangleString(int mangleIdx, String word) {
         switch (mangleIdx) {
         case 1:
             return deleteFirstChar(word);
@@ -346,22 +857,113 @@ public class PasswordCrack {
         }
     }
     
-    private void compareWordToPass(String word) {
+    //returns the number of cracked users
+    private int compareWordToPass(String word, String strategy) {
+        return compareWordToPass(this.users, word, strategy);
+    }
+    
+    private int compareWordToPass(TargetSet targets, String word, String strategy) {
+        this.loopback.drain();
+        this.candidates.increment();
+        List<User> remove = crackedBy(targets, word);
+        if(!remove.isEmpty())
+            cracked(remove, word, strategy);
+        return remove.size();
+    }
+    
+    //the targets the word cracks, hashed once per salt group (which is also once per algorithm)
+    static List<User> crackedBy(TargetSet targets, String word) {
         List<User> remove = new ArrayList<>();
-        for(User user : this.users) {
-            if(user.encryptedPasswordData.compareTo(jcrypt.crypt(user.salt, word)) == 0) {
-                System.out.println(word);
-                remove.add(user); 
+        for(TargetSet.SaltGroup group : targets.groups()) {
+            List<User> cracked = group.crack(word);
+            if(cracked != null)
+                remove.addAll(cracked);
+        }
+        return remove;
+    }
+    
+    //the same as compareWordToPass, but for a candidate that already has its key schedule
+    private int compareKeyToPass(int[] schedule, char[] candidate, int[] block, String strategy) {
+        return compareKeyToPass(this.users, schedule, candidate, block, strategy);
+    }
+    
+    private int compareKeyToPass(TargetSet targets, int[] schedule, char[] candidate, int[] block, String strategy) {
+        List<User> remove = matchKey(targets, schedule, block);
+        if(remove == null)
+            return 0;
+        cracked(remove, new String(candidate), strategy);
+        return remove.size();
+    }
+    
+    //the same as compareKeyToPass, for a candidate from the pipeline
+    private int compareKeyToPass(int[] schedule, int[] block, String word, String strategy) {
+        List<User> remove = matchKey(this.users, schedule, block);
+        for(TargetSet.SaltGroup group : this.users.groups()) {
+            if(group.swaps != null)
+                continue;
+            List<User> cracked = group.crack(word);
+            if(cracked == null)
+                continue;
+            if(remove == null)
+                remove = new ArrayList<>();
+            remove.addAll(cracked);
+        }
+        if(remove == null)
+            return 0;
+        cracked(remove, word, strategy);
+        return remove.size();
+    }
+    
+    //the traditional crypt users the key cracks, null (nothing allocated) if none
+    private List<User> matchKey(TargetSet targets, int[] schedule, int[] block) {
+        this.loopback.drain();
+        this.candidates.increment();
+        List<User> remove = null;
+        for(TargetSet.SaltGroup group : targets.groups()) {
+            if(group.swaps == null)
+                continue;
+            jcrypt.encrypt(schedule, group.swaps[0], group.swaps[1], block);
+            for(User user : group.users) {
+                if(user.encryptedBlock[0] == block[0] && user.encryptedBlock[1] == block[1]) {
+                    if(remove == null)
+                        remove = new ArrayList<>();
+                    remove.add(user);
+                }
             }
         }
-        for(User user : remove)
-            this.users.remove(user);
+        return remove;
+    }
+    
+    private int compareWordToUser(User user, String word) {
+        this.candidates.increment();
+        if(!user.crackedBy(word) || !this.users.contains(user))
+            return 0;
+        cracked(Collections.singletonList(user), word, "targeted");
+        return 1;
+    }
+    
+    private void report(User user, String word, String strategy) {
+        this.results.offer(new CrackEvent(user.username, user.host, word, strategy,
+                System.currentTimeMillis() - this.startTime, this.candidates.sum()));
+    }
+    
+    private void cracked(List<User> cracked, String word, String strategy) {
+        for(User user : cracked) {
+            for(TargetSet targets : this.auditTargets)
+                targets.remove(user);
+            if(!this.users.remove(user))
+                continue;
+            report(user, word, strategy);
+            if(this.pot != null)
+                this.pot.add(user.encryptedPasswordData, word);
+        }
+        this.loopback.offer(word);
         
         if(this.users.isEmpty())
-            System.exit(0);
+            exit();
     }
     
-    private List<String> prependOne(String word){
+    static List<String> prependOne(String word){
         List<String> prepended = new ArrayList<>();
         StringBuilder tempSb = new StringBuilder();
         for(int i = 48; i <= 57; i++) {
@@ -383,7 +985,7 @@ public class PasswordCrack {
         return prepended;
     }
     
-    private List<String> appendOne(String word){
+    static List<String> appendOne(String word){
         List<String> appended = new ArrayList<>();
         if(word.length() >= 8)
             return appended;
@@ -409,13 +1011,13 @@ public class PasswordCrack {
         return appended;
     }
     
-    private String deleteFirstChar(String word) {
+    private static String deleteFirstChar(String word) {
         if(word.length() == 0)
             return word;
         return word.substring(1);
     }
     
-    private String deleteLastChar(String word) {
+    private static String deleteLastChar(String word) {
         if(word.length() > 8)
             return word;
         if(word.length() == 0)
@@ -423,17 +1025,17 @@ public class PasswordCrack {
         return word.substring(0, word.length() - 1);
     }
     
-    private String reverseString(String word) {
+    static String reverseString(String word) {
         return new StringBuilder(word).reverse().toString();
     }
     
-    private String duplicateString(String word) {
+    private static String duplicateString(String word) {
         if(word.length() >= 8)
             return word;
         return new StringBuilder(word).append(word).toString();
     }
     
-    private String reflectString(String word) {
+    private static String reflectString(String word) {
         if(word.length() >= 8)
             return word;
         StringBuilder sb = new StringBuilder(word);
@@ -442,7 +1044,7 @@ public class PasswordCrack {
         return sb.toString();
     }
     
-    private String reflectStringFirstReverse(String word) {
+    private static String reflectStringFirstReverse(String word) {
         if(word.length() >= 8)
             return new StringBuilder(word).reverse().toString();
         StringBuilder sb = new StringBuilder(word);
@@ -451,15 +1053,15 @@ public class PasswordCrack {
         return rev.toString();
     }
     
-    private String upperCase(String word) {
+    private static String upperCase(String word) {
         return word.toUpperCase();
     }
     
-    private String lowerCase(String word) {
+    private static String lowerCase(String word) {
         return word.toLowerCase();
     }
     
-    private String capitalize(String word) {
+    private static String capitalize(String word) {
         if(word.length() == 0)
             return word;
         int charIdx = (int) word.charAt(0);
@@ -471,7 +1073,7 @@ public class PasswordCrack {
         return sb.toString();
     }
     
-    private String nCapitalize(String word) {
+    private static String nCapitalize(String word) {
         if(word.length() == 0)
             return word;
         int charIdx = (int) word.charAt(0);
@@ -483,7 +1085,7 @@ public class PasswordCrack {
         return sb.toString();
     }
     
-    private String toggleStartWithFirst(String word) {
+    private static String toggleStartWithFirst(String word) {
         StringBuilder sb = new StringBuilder();
         sb.setLength(0);
         String upperCase = upperCase(word);
@@ -498,7 +1100,7 @@ public class PasswordCrack {
         return sb.toString();
     }
     
-    private String toggleStartWithSecond(String word) {
+    private static String toggleStartWithSecond(String word) {
         StringBuilder sb = new StringBuilder();
         sb.setLength(0);
         String upperCase = upperCase(word);
@@ -514,6 +1116,8 @@ public class PasswordCrack {
     }
     
     /****************************************BRUTE FORCE**********************************************************/
+    static final int BRUTE_CHARS = 62;
+    
     private void startBrute(){    
         int cores = Runtime.getRuntime().availableProcessors();
         int passwordLength = 8;
@@ -540,7 +1144,7 @@ public class PasswordCrack {
         }
         
         if(currPasswordLength > 8) {
-            System.exit(0);
+            exit();
         }
         
         todo = new ArrayList<>();
@@ -559,7 +1163,7 @@ public class PasswordCrack {
         }
         
         if(currPasswordLength > 8) {
-            System.exit(0);
+            exit();
         }
         
         todo = new ArrayList<>();
@@ -578,7 +1182,7 @@ public class PasswordCrack {
         }
         
         if(currPasswordLength > 8) {
-            System.exit(0);
+            exit();
         }
         
         todo = new ArrayList<>();
@@ -589,7 +1193,7 @@ public class PasswordCrack {
         }
         
         if(currPasswordLength > 8) {
-            System.exit(0);
+            exit();
         }
         
         try {
@@ -601,18 +1205,35 @@ public class PasswordCrack {
         }
         
         executorService.shutdown();
-        System.exit(0);
+        exit();
     }
     
     private void bruteCurrString(int idx, int ch, char[] attempt) {
+        attempt[idx] = bruteChar(ch);
+        compareWordToPass(new String(attempt), "brute");
+    }
+    
+    private static char bruteChar(int ch) {
         if (ch <= 9) {
-            attempt[idx] = (char) (ch+48);
+            return (char) (ch+48);
         } else if (ch <= 35) {
-            attempt[idx] = (char) (ch+55);
+            return (char) (ch+55);
         } else {
-            attempt[idx] = (char) (ch+61);
+            return (char) (ch+61);
+        }
+    }
+    
+    /**
+     * Fills the given attempt with the brute force candidate of the given index, where the
+     * candidates of a length are numbered 0 to 62^length - 1 (alphanumerical chars).
+     * @param index the index of the candidate
+     * @param attempt the attempt to fill, its length is the length of the candidate
+     */
+    static void bruteCandidate(long index, char[] attempt) {
+        for(int i = 0; i < attempt.length; i++) {
+            attempt[i] = bruteChar((int) (index % BRUTE_CHARS));
+            index /= BRUTE_CHARS;
         }
-        compareWordToPass(new String(attempt));
     }
     
     private void brute(int i, char[] attempt){
@@ -687,20 +1308,63 @@ public class PasswordCrack {
     /**
      * Creates the <code>PasswordCrack</code> with the given dictionary file and the password file. Starts
      * cracking the password immediately.
-     * @param args args[0]: the path to the dictionary file. args[1]: the path to the password file.
+     * @param args args[0]: the path to the dictionary file. args[1]...: the paths to the password files (or directories
+     * of password files). Arguments starting with -- are optional parameters (see <code>CrackOptions</code>).
      */
     public static void main(String[] args) {
-        if(args.length != 2) {
-            System.out.println("Expects two arguments in the form: <path to dictionary file> <path to password file)>");
+        if(args.length < 2) {
+            System.out.println("Expects two arguments in the form: <path to dictionary file> <path to password file)>..."
+                    + " [--pot=<path to pot file>] [--targeted=true]");
             System.out.println("If there is no dictionary file it is possible for it to be empty, as long as the file exists."
                     + " Then brute force will run much sooner.");
             System.out.println("The password file holds the user information (e.g. encrypted password). If the file is empty, i.e. nothing"
                     + " to crack, the program will exit after reading the empty file.");
+            System.out.println("More than one password file (or a directory of password files) can be given, they are then"
+                    + " cracked in one pass and every crack is printed as <password file>:<account>:<password>.");
+            System.out.println("The pot file holds the passwords cracked in earlier runs, users found in it are not cracked again."
+                    + " New cracks are appended to it.");
+            System.out.println("With --targeted=true the names of a user's info are only tried against that user's own"
+                    + " password, the dictionary only holds the common passwords and the dictionary file.");
+            System.out.println("With --results=<file> every crack is also written to the file, as JSON lines or with"
+                    + " --results-format=csv as CSV.");
+            System.out.println("With --budget=<seconds> the strategies (brute force included) share the given time, the ones"
+                    + " cracking the most per second get the most cores.");
+            System.out.println("With --rule-stats=true the candidates, crypts and cracks of every mangle chain are counted and"
+                    + " printed at the end (and written to --rule-stats-file=<file> if given).");
+            System.out.println("With --case-permutations=true every upper/lower case combination of the first 8 chars of"
+                    + " every dictionary word is tried as well.");
+            System.out.println("With --leetspeak=true leetspeak variants (p4ssw0rd) of every dictionary word and its one mangle"
+                    + " variants are tried, see --leet-table=<char:substitutes,...> (default " + Leetspeak.DEFAULT_TABLE
+                    + ") and --leet-max=<variants per word> (default " + Leetspeak.DEFAULT_MAX_VARIANTS + ").");
+            System.out.println("With --combinator=<dictionary file> every dictionary word followed by every word of the given"
+                    + " file is tried (--combinator=true combines the dictionary with itself).");
+            System.out.println("With --prince=<max words> chains of 1 to max dictionary words are tried, shortest and most"
+                    + " probable first, and --prince-progress=<file> continues an interrupted run from the file.");
+            System.out.println("With --audit=<ledger file> the work run against every hash is remembered in the ledger, and a"
+                    + " later run only gives unchanged hashes new work (new words, rules or brute force lengths).");
+            System.out.println("With --rainbow=<table directory> the users whose salt has a table (built with RainbowTable) are"
+                    + " looked up in it before brute force.");
+            System.out.println("With --crypters=<threads> the mangle strategies run as a pipeline: --generators=<threads>"
+                    + " (default: the number of cores) make the candidates and the crypters crypt them in batches"
+                    + " (not with --rule-stats).");
             System.out.println("Please try again!");
             System.exit(0);
         }
+        List<String> userInfoFiles = new ArrayList<>();
+        List<String> parameters = new ArrayList<>();
+        for(int i = 1; i < args.length; i++) {
+            if(args[i].startsWith("--"))
+                parameters.add(args[i]);
+            else
+                userInfoFiles.add(args[i]);
+        }
+        if(userInfoFiles.isEmpty()) {
+            System.out.println("Expects at least one password file.");
+            System.exit(0);
+        }
+        CrackOptions options = CrackOptions.parse(parameters.toArray(new String[0]));
         @SuppressWarnings("unused")
-        PasswordCrack pc = new PasswordCrack(args[0], args[1]);
+        PasswordCrack pc = new PasswordCrack(args[0], userInfoFiles, options);
     }
 
 }
@@ -0,0 +1,271 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A persistent file of already cracked passwords. The pot file itself is append only, one record per line:
+ *
+ * <pre>
+ * encrypted password data:plaintext
+ * </pre>
+ *
+ * The encrypted password data is of any length (<code>$1$</code> and <code>$6$</code> data as well as the 13 chars of
+ * traditional crypt) and never holds a colon, so it ends at the first colon of the record. A record is only valid once its newline is written, so a crash can at most leave a partial last line,
+ * which is cut off the next time the pot file is opened.
+ *
+ * Lookups go through a memory-mapped hash index (<code>&lt;pot file&gt;.idx</code>) of 64-bit hash keys and
+ * record offsets, so opening a pot file with millions of records does not read the records. The index is
+ * only a cache: it remembers how much of the pot file it covers, indexes whatever was appended after that
+ * and is rebuilt if it is missing, broken or too full.
+ *
+ * @author Antonio
+ *
+ */
+class PotFile {
+    private static final long MAGIC = 0x504f544944583031L; //"POTIDX01"
+    private static final int HEADER_SIZE = 32;
+    private static final int SLOT_SIZE = 16;
+    private static final long MIN_CAPACITY = 1024;
+
+    private final Path potPath;
+    private final Path indexPath;
+    private FileChannel pot;
+    private MappedByteBuffer records;
+    private FileChannel index;
+    private MappedByteBuffer slots;
+    private long capacity;
+    private long count;
+    private final ExecutorService appender = Executors.newSingleThreadExecutor();
+
+    /**
+     * Opens (or creates) the given pot file and its index.
+     * @param potFile the path to the pot file
+     * @throws IOException if the pot file or its index could not be opened
+     */
+    PotFile(String potFile) throws IOException {
+        this.potPath = Paths.get(potFile);
+        this.indexPath = Paths.get(potFile + ".idx");
+        this.pot = FileChannel.open(this.potPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        cutPartialRecord();
+        this.records = this.pot.map(FileChannel.MapMode.READ_ONLY, 0, this.pot.size());
+        openIndex();
+    }
+
+    //a crash while appending may leave a record without its newline
+    private void cutPartialRecord() throws IOException {
+        long size = this.pot.size();
+        long end = size;
+        ByteBuffer b = ByteBuffer.allocate(1);
+        while(end > 0) {
+            b.clear();
+            this.pot.read(b, end - 1);
+            if(b.get(0) == '\n')
+                break;
+            end--;
+        }
+        if(end < size)
+            this.pot.truncate(end);
+    }
+
+    private void openIndex() throws IOException {
+        long indexed = -1;
+        if(Files.exists(this.indexPath)) {
+            this.index = FileChannel.open(this.indexPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if(this.index.size() >= HEADER_SIZE) {
+                MappedByteBuffer header = this.index.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+                long capacity = header.getLong(8);
+                if(header.getLong(0) == MAGIC && Long.bitCount(capacity) == 1
+                        && this.index.size() == HEADER_SIZE + capacity * SLOT_SIZE
+                        && header.getLong(24) <= this.records.capacity()) {
+                    this.capacity = capacity;
+                    this.count = header.getLong(16);
+                    indexed = header.getLong(24);
+                }
+            }
+            if(indexed < 0)
+                this.index.close();
+        }
+        if(indexed < 0) {
+            rebuildIndex(MIN_CAPACITY);
+            return;
+        }
+        this.slots = this.index.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + this.capacity * SLOT_SIZE);
+        indexRecords(indexed, this.records.capacity());
+    }
+
+    private void rebuildIndex(long minCapacity) throws IOException {
+        this.records = this.pot.map(FileChannel.MapMode.READ_ONLY, 0, this.pot.size());
+        long capacity = MIN_CAPACITY;
+        long records = countRecords();
+        while(capacity < minCapacity || records * 2 >= capacity)
+            capacity <<= 1;
+        Path tmp = Paths.get(this.indexPath + ".tmp");
+        try (FileChannel fresh = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer header = fresh.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity * SLOT_SIZE);
+            header.putLong(0, MAGIC);
+            header.putLong(8, capacity);
+            header.force();
+        }
+        Files.move(tmp, this.indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.index = FileChannel.open(this.indexPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.slots = this.index.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity * SLOT_SIZE);
+        this.capacity = capacity;
+        this.count = 0;
+        indexRecords(0, this.records.capacity());
+    }
+
+    private long countRecords() {
+        long records = 0;
+        for(int i = 0; i < this.records.capacity(); i++)
+            if(this.records.get(i) == '\n')
+                records++;
+        return records;
+    }
+
+    //indexes the records in the mapped pot file between the given offsets
+    private void indexRecords(long from, long to) throws IOException {
+        long start = from;
+        for(long i = from; i < to; i++) {
+            if(this.records.get((int) i) != '\n')
+                continue;
+            String hash = readHash(this.records, start);
+            if(hash != null && !hash.isEmpty())
+                insert(key(hash), start);
+            start = i + 1;
+        }
+        this.slots.putLong(24, to);
+        this.slots.putLong(16, this.count);
+    }
+
+    private void insert(long key, long offset) throws IOException {
+        if((this.count + 1) * 2 >= this.capacity) {
+            this.index.close();
+            rebuildIndex(this.capacity << 1);
+        }
+        long mask = this.capacity - 1;
+        for(long slot = key & mask; ; slot = (slot + 1) & mask) {
+            int position = (int) (HEADER_SIZE + slot * SLOT_SIZE);
+            long existing = this.slots.getLong(position);
+            if(existing == 0) {
+                this.slots.putLong(position + 8, offset);
+                this.slots.putLong(position, key);
+                this.count++;
+                return;
+            }
+            if(existing == key && this.slots.getLong(position + 8) == offset)
+                return;
+        }
+    }
+
+    //the encrypted password data of the record at the given offset, null if the record has no colon
+    private static String readHash(ByteBuffer buffer, long offset) {
+        int end = (int) offset;
+        while(end < buffer.capacity() && buffer.get(end) != ':') {
+            if(buffer.get(end) == '\n')
+                return null;
+            end++;
+        }
+        if(end == buffer.capacity())
+            return null;
+        byte[] hash = new byte[end - (int) offset];
+        for(int i = 0; i < hash.length; i++)
+            hash[i] = buffer.get((int) offset + i);
+        return new String(hash, StandardCharsets.ISO_8859_1);
+    }
+
+    //FNV-1a, 0 marks an empty slot
+    private static long key(String hash) {
+        long key = 0xcbf29ce484222325L;
+        for(int i = 0; i < hash.length(); i++) {
+            key ^= hash.charAt(i);
+            key *= 0x100000001b3L;
+        }
+        return key == 0 ? 1 : key;
+    }
+
+    /**
+     * Looks up the plaintext of the given encrypted password data among the records that were in the pot
+     * file when it was opened.
+     * @param encryptedPasswordData the full encrypted password data
+     * @return the plaintext, or <code>null</code> if it has not been cracked before
+     */
+    synchronized String lookup(String encryptedPasswordData) {
+        long key = key(encryptedPasswordData);
+        long mask = this.capacity - 1;
+        for(long slot = key & mask; ; slot = (slot + 1) & mask) {
+            int position = (int) (HEADER_SIZE + slot * SLOT_SIZE);
+            long existing = this.slots.getLong(position);
+            if(existing == 0)
+                return null;
+            long offset = this.slots.getLong(position + 8);
+            if(existing == key && offset < this.records.capacity()
+                    && encryptedPasswordData.equals(readHash(this.records, offset)))
+                return readPlaintext(offset + encryptedPasswordData.length() + 1);
+        }
+    }
+
+    private String readPlaintext(long offset) {
+        int end = (int) offset;
+        while(this.records.get(end) != '\n')
+            end++;
+        byte[] plaintext = new byte[end - (int) offset];
+        for(int i = 0; i < plaintext.length; i++)
+            plaintext[i] = this.records.get((int) offset + i);
+        return new String(plaintext, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Appends a cracked password to the pot file (asynchronously, the cracker never waits for the disk).
+     * @param encryptedPasswordData the full encrypted password data
+     * @param plaintext the cracked password
+     */
+    void add(String encryptedPasswordData, String plaintext) {
+        //the data ends at the first colon of a record
+        if(encryptedPasswordData.isEmpty() || encryptedPasswordData.indexOf(':') >= 0)
+            return;
+        this.appender.execute(() -> {
+            try {
+                byte[] record = (encryptedPasswordData + ":" + plaintext + "\n").getBytes(StandardCharsets.UTF_8);
+                long offset = this.pot.size();
+                ByteBuffer buffer = ByteBuffer.wrap(record);
+                while(buffer.hasRemaining())
+                    this.pot.write(buffer, offset + buffer.position());
+                this.pot.force(false);
+                synchronized (this) {
+                    insert(key(encryptedPasswordData), offset);
+                    this.slots.putLong(16, this.count);
+                    this.slots.putLong(24, offset + record.length);
+                }
+            } catch (IOException e) {
+                System.out.println("Could not write to the pot file: " + this.potPath + " (" + e.getMessage() + ")");
+            }
+        });
+    }
+
+    /**
+     * Waits for all pending records to be written and closes the pot file.
+     */
+    void close() {
+        this.appender.shutdown();
+        try {
+            this.appender.awaitTermination(1, TimeUnit.MINUTES);
+            this.slots.force();
+            this.index.close();
+            this.pot.close();
+        } catch (InterruptedException | IOException e) {
+            System.out.println("Could not close the pot file: " + this.potPath + " (" + e.getMessage() + ")");
+        }
+    }
+}
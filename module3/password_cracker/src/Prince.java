@@ -0,0 +1,433 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tries chains of 1 to <code>maxElements</code> dictionary words (<code>bluesky1</code>, <code>johnjo</code>), in
+ * the manner of PRINCE. Only the first 8 chars reach crypt, so the chains are bounded to 8 chars:
+ * <ul>
+ * <li>the words are cut to 8 chars and only used once per distinct cut,</li>
+ * <li>a word is only followed by another while the chain is shorter than 8 chars, and a last word that
+ * reaches the 8th char is cut there, with every distinct cut used once.</li>
+ * </ul>
+ * So no chain shape (the lengths of its words) gives the same 8 chars twice. Different shapes can still give the
+ * same chars (<code>ab+cd</code> and <code>abc+d</code>), so a chain is skipped if an earlier shape in the order
+ * can give its chars: the chars are split at the word boundaries of every earlier shape of the same length and
+ * looked up in the words of that shape. Every key is thus only tried by the first shape that gives it, without a
+ * set of every key tried.
+ *
+ * The chains are ordered by their length and then by the number of chains of their shape, fewest first, and
+ * within a shape by the probability of the words: the words of every length are ordered by how often they occur
+ * in the dictionary, then by their first position in it. Every chain has a position in this order, so the chains
+ * can be split into ranges over the cores and a run can be continued from a position (see <code>Progress</code>).
+ * The key is built in place and its schedule is only updated for the chars that change
+ * (see <code>jcrypt.flipKeyBits</code>).
+ *
+ * @author Antonio
+ *
+ */
+class Prince {
+    static final long BLOCK = 1 << 16;
+    private static final int KEY_LENGTH = 8;
+
+    //the chains of one shape: the words of every position, where every position starts in the key
+    private static class Shape {
+        final char[][][] elements;
+        final int[] offsets;
+        final int length;
+        final long size;
+        //the shapes before this one in the order with the same length
+        Shape[] earlier;
+
+        Shape(List<char[][]> elements) {
+            this.elements = elements.toArray(new char[0][][]);
+            this.offsets = new int[this.elements.length];
+            int length = 0;
+            long size = 1;
+            for(int i = 0; i < this.elements.length; i++) {
+                this.offsets[i] = length;
+                length += this.elements[i][0].length;
+                size = Math.multiplyExact(size, this.elements[i].length);
+            }
+            this.length = length;
+            this.size = size;
+        }
+
+        String lengths() {
+            StringBuilder sb = new StringBuilder();
+            for(char[][] words : this.elements)
+                sb.append(sb.length() == 0 ? "" : "+").append(words[0].length);
+            return sb.toString();
+        }
+    }
+
+    //the words of one length, looked up by the chars of a key without building strings
+    private static class WordSet {
+        private final char[][] table;
+        private final int mask;
+
+        WordSet(char[][] words) {
+            int capacity = 2;
+            while(capacity < 2 * words.length)
+                capacity <<= 1;
+            this.table = new char[capacity][];
+            this.mask = capacity - 1;
+            for(char[] word : words) {
+                int i = hash(word, 0, word.length) & this.mask;
+                while(this.table[i] != null)
+                    i = (i + 1) & this.mask;
+                this.table[i] = word;
+            }
+        }
+
+        boolean contains(char[] key, int from, int to) {
+            for(int i = hash(key, from, to) & this.mask; this.table[i] != null; i = (i + 1) & this.mask) {
+                if(Arrays.equals(this.table[i], 0, this.table[i].length, key, from, to))
+                    return true;
+            }
+            return false;
+        }
+
+        private static int hash(char[] chars, int from, int to) {
+            int h = 0;
+            for(int i = from; i < to; i++)
+                h = 31 * h + chars[i];
+            return h ^ h >>> 16;
+        }
+    }
+
+    //which runs of the chars of a chain are words, looked up at most once per chain
+    private class Segments {
+        private final int[] stamps = new int[(KEY_LENGTH + 1) * (KEY_LENGTH + 1)];
+        private final boolean[] words = new boolean[(KEY_LENGTH + 1) * (KEY_LENGTH + 1)];
+        private int stamp = 0;
+
+        //whether an earlier shape gives the same chars, so they have already been tried
+        boolean triedBefore(Shape shape, char[] chain) {
+            if(shape.earlier.length == 0)
+                return false;
+            this.stamp++;
+            for(Shape earlier : shape.earlier) {
+                if(gives(earlier, chain))
+                    return true;
+            }
+            return false;
+        }
+
+        private boolean gives(Shape shape, char[] chain) {
+            for(int i = 0; i < shape.offsets.length; i++) {
+                int to = i + 1 < shape.offsets.length ? shape.offsets[i + 1] : shape.length;
+                if(!isWord(chain, shape.offsets[i], to))
+                    return false;
+            }
+            return true;
+        }
+
+        //only the last word of a chain reaches the 8th char, and it is then a cut word
+        private boolean isWord(char[] chain, int from, int to) {
+            int i = from * (KEY_LENGTH + 1) + to;
+            if(this.stamps[i] != this.stamp) {
+                this.stamps[i] = this.stamp;
+                WordSet words = to == KEY_LENGTH ? Prince.this.cutWords[to - from] : Prince.this.exactWords[to - from];
+                this.words[i] = words.contains(chain, from, to);
+            }
+            return this.words[i];
+        }
+    }
+
+    /**
+     * The positions run so far, to continue an interrupted run. The chains are handed out in blocks, and the
+     * position saved is the one below which every block has been run.
+     */
+    static class Progress {
+        private final Path file;
+        private final String version;
+        private final AtomicLong next;
+        private final TreeSet<Long> finished = new TreeSet<>();
+        private long done = 0;
+
+        /**
+         * Continues from the given file if it is of the same chains.
+         * @param file the progress file, <code>null</code> for none
+         * @param version the version of the chains (see <code>Prince.version</code>)
+         * @throws IOException if the file exists but could not be read
+         */
+        Progress(String file, String version) throws IOException {
+            this.file = file == null ? null : Paths.get(file);
+            this.version = version;
+            if(this.file != null && Files.exists(this.file)) {
+                String[] saved = new String(Files.readAllBytes(this.file), StandardCharsets.UTF_8).trim().split(" ");
+                if(saved.length == 2 && saved[0].equals(version))
+                    this.done = Long.parseLong(saved[1]);
+                else
+                    System.out.println("The PRINCE progress in " + file + " is of other chains, starting over");
+            }
+            this.next = new AtomicLong(this.done);
+        }
+
+        /**
+         * @return the first position of the next block to run
+         */
+        long claim() {
+            return this.next.getAndAdd(BLOCK);
+        }
+
+        /**
+         * @param block the first position of a block that has been run
+         */
+        synchronized void finished(long block) {
+            this.finished.add(block);
+            while(this.finished.remove(this.done))
+                this.done += BLOCK;
+        }
+
+        /**
+         * @return the position below which every chain has been run
+         */
+        synchronized long done() {
+            return this.done;
+        }
+
+        synchronized void save() throws IOException {
+            if(this.file == null)
+                return;
+            Path temp = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+            try(PrintWriter out = new PrintWriter(Files.newBufferedWriter(temp, StandardCharsets.UTF_8))) {
+                out.println(this.version + " " + this.done);
+            }
+            Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private final List<Shape> shapes = new ArrayList<>();
+    //the position of the first chain of every shape, and of the end
+    private final long[] starts;
+    private final String version;
+    private final WordSet[] exactWords = new WordSet[KEY_LENGTH];
+    private final WordSet[] cutWords = new WordSet[KEY_LENGTH + 1];
+
+    /**
+     * Creates the chains of the given dictionary.
+     * @param dict the dictionary
+     * @param maxElements the max number of words in a chain
+     */
+    Prince(List<String> dict, int maxElements) {
+        this.version = Long.toHexString(AuditLedger.unit("prince/" + maxElements, dict, 0, dict.size()));
+        //the number of times and the first position every cut word occurs
+        Map<String, long[]> counts = new HashMap<>();
+        for(int i = 0; i < dict.size(); i++) {
+            String word = dict.get(i);
+            if(word.isEmpty())
+                continue;
+            String cut = word.length() > KEY_LENGTH ? word.substring(0, KEY_LENGTH) : word;
+            long[] count = counts.computeIfAbsent(cut, w -> new long[2]);
+            if(count[0]++ == 0)
+                count[1] = i;
+        }
+        //exact[l]: the words of length l, cut[l]: the distinct cuts to l chars of the words of l chars or more
+        char[][][] exact = new char[KEY_LENGTH][][];
+        char[][][] cut = new char[KEY_LENGTH + 1][][];
+        for(int length = 1; length <= KEY_LENGTH; length++) {
+            Map<String, long[]> exactCounts = new HashMap<>();
+            Map<String, long[]> cutCounts = new HashMap<>();
+            for(Map.Entry<String, long[]> entry : counts.entrySet()) {
+                String word = entry.getKey();
+                long[] count = entry.getValue();
+                if(word.length() == length && length < KEY_LENGTH)
+                    exactCounts.put(word, count);
+                if(word.length() >= length) {
+                    long[] prefix = cutCounts.computeIfAbsent(word.substring(0, length), w -> new long[] {0, Long.MAX_VALUE});
+                    prefix[0] += count[0];
+                    prefix[1] = Math.min(prefix[1], count[1]);
+                }
+            }
+            if(length < KEY_LENGTH) {
+                exact[length] = byProbability(exactCounts);
+                this.exactWords[length] = new WordSet(exact[length]);
+            }
+            cut[length] = byProbability(cutCounts);
+            this.cutWords[length] = new WordSet(cut[length]);
+        }
+        addShapes(new ArrayList<>(), 0, maxElements, exact, cut);
+        this.shapes.sort((a, b) -> a.length != b.length ? Integer.compare(a.length, b.length)
+                : a.size != b.size ? Long.compare(a.size, b.size) : a.lengths().compareTo(b.lengths()));
+        this.starts = new long[this.shapes.size() + 1];
+        for(int i = 0; i < this.shapes.size(); i++) {
+            Shape shape = this.shapes.get(i);
+            this.starts[i + 1] = Math.addExact(this.starts[i], shape.size);
+            List<Shape> earlier = new ArrayList<>();
+            for(Shape other : this.shapes.subList(0, i)) {
+                if(other.length == shape.length)
+                    earlier.add(other);
+            }
+            shape.earlier = earlier.toArray(new Shape[0]);
+        }
+    }
+
+    private static char[][] byProbability(Map<String, long[]> counts) {
+        List<Map.Entry<String, long[]>> entries = new ArrayList<>(counts.entrySet());
+        entries.sort((a, b) -> a.getValue()[0] != b.getValue()[0] ? Long.compare(b.getValue()[0], a.getValue()[0])
+                : Long.compare(a.getValue()[1], b.getValue()[1]));
+        char[][] words = new char[entries.size()][];
+        for(int i = 0; i < words.length; i++)
+            words[i] = entries.get(i).getKey().toCharArray();
+        return words;
+    }
+
+    //every shape starting with the given words (of used chars), ending in a word that is cut if it reaches 8 chars
+    private void addShapes(List<char[][]> first, int used, int maxElements, char[][][] exact, char[][][] cut) {
+        for(int length = 1; used + length <= KEY_LENGTH; length++) {
+            char[][] last = used + length == KEY_LENGTH ? cut[length] : exact[length];
+            if(last.length > 0) {
+                List<char[][]> elements = new ArrayList<>(first);
+                elements.add(last);
+                this.shapes.add(new Shape(elements));
+            }
+            if(first.size() + 1 < maxElements && used + length < KEY_LENGTH && exact[length].length > 0) {
+                first.add(exact[length]);
+                addShapes(first, used + length, maxElements, exact, cut);
+                first.remove(first.size() - 1);
+            }
+        }
+    }
+
+    /**
+     * @return the number of chains
+     */
+    long size() {
+        return this.starts[this.shapes.size()];
+    }
+
+    /**
+     * @return the version of the chains: the same for the same dictionary and max number of words
+     */
+    String version() {
+        return this.version;
+    }
+
+    /**
+     * Runs the chains of positions <code>[from, to)</code>.
+     * @param from the first position (inclusive)
+     * @param to the last position (exclusive)
+     * @param tester receives every chain
+     */
+    void run(long from, long to, KeyTester tester) {
+        to = Math.min(to, size());
+        if(from >= to)
+            return;
+        int s = Arrays.binarySearch(this.starts, from);
+        //no shape is empty, so the starts are distinct
+        s = s >= 0 ? s : -s - 2;
+        byte[] key = new byte[KEY_LENGTH];
+        int[] schedule = new int[32];
+        char[] candidate = new char[KEY_LENGTH];
+        //the candidate of every length, so that the tester gets exactly the chars of the key
+        char[][] candidates = new char[KEY_LENGTH + 1][];
+        for(int i = 0; i <= KEY_LENGTH; i++)
+            candidates[i] = new char[i];
+        int[] digits = new int[KEY_LENGTH];
+        Segments segments = new Segments();
+        long position = from;
+        while(position < to) {
+            Shape shape = this.shapes.get(s);
+            int last = shape.elements.length - 1;
+            long local = position - this.starts[s];
+            for(int i = last; i >= 0; i--) {
+                digits[i] = (int) (local % shape.elements[i].length);
+                local /= shape.elements[i].length;
+            }
+            for(int i = 0; i <= last; i++)
+                setElement(shape, i, digits[i], key, schedule, candidate);
+            for(int p = shape.length; p < KEY_LENGTH; p++)
+                setChar(p, (char) 0, key, schedule, candidate);
+            long end = Math.min(to, this.starts[s + 1]);
+            char[] chain = candidates[shape.length];
+            for(; position < end; position++) {
+                System.arraycopy(candidate, 0, chain, 0, shape.length);
+                if(!segments.triedBefore(shape, chain))
+                    tester.test(schedule, chain);
+                //the last word changes fastest
+                int i = last;
+                while(i >= 0 && ++digits[i] == shape.elements[i].length) {
+                    digits[i] = 0;
+                    i--;
+                }
+                for(int j = Math.max(i, 0); j <= last; j++)
+                    setElement(shape, j, digits[j], key, schedule, candidate);
+            }
+            s++;
+        }
+    }
+
+    private static void setElement(Shape shape, int i, int digit, byte[] key, int[] schedule, char[] candidate) {
+        char[] word = shape.elements[i][digit];
+        for(int j = 0; j < word.length; j++)
+            setChar(shape.offsets[i] + j, word[j], key, schedule, candidate);
+    }
+
+    private static void setChar(int position, char c, byte[] key, int[] schedule, char[] candidate) {
+        byte b = (byte) (c << 1);
+        if(key[position] != b) {
+            jcrypt.flipKeyBits(schedule, position, (key[position] ^ b) & 0xff);
+            key[position] = b;
+        }
+        candidate[position] = c;
+    }
+
+    /**
+     * Checks that the chains give every key once: the keys tried are compared to every concatenation of 1 to
+     * <code>maxElements</code> dictionary words, cut to 8 chars.
+     * @param args args[0] (optional): the path to a dictionary file (default: a few words that overlap).
+     * args[1] (optional): the max number of words in a chain (default: 4)
+     * @throws IOException if the dictionary file could not be read
+     */
+    public static void main(String[] args) throws IOException {
+        List<String> dict = args.length > 0 ? Files.readAllLines(Paths.get(args[0]), StandardCharsets.UTF_8)
+                : Arrays.asList("ab", "cd", "abc", "d", "bcd", "pass", "word", "password", "a");
+        int maxElements = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        Prince prince = new Prince(dict, maxElements);
+        Set<String> tried = new HashSet<>();
+        long[] duplicates = {0};
+        prince.run(0, prince.size(), (schedule, candidate) -> {
+            if(!tried.add(new String(candidate)))
+                duplicates[0]++;
+            return 0;
+        });
+        Set<String> expected = new HashSet<>();
+        concatenations(new HashSet<>(dict), "", maxElements, expected);
+        if(duplicates[0] > 0 || !tried.equals(expected)) {
+            System.out.println("Of the " + prince.size() + " chains, " + duplicates[0] + " repeat a key and "
+                    + tried.size() + " keys were tried of the " + expected.size() + " expected!");
+            System.exit(0);
+        }
+        System.out.println("The " + prince.size() + " chains give all " + expected.size() + " keys once each.");
+    }
+
+    private static void concatenations(Set<String> dict, String first, int elements, Set<String> keys) {
+        for(String word : dict) {
+            if(word.isEmpty())
+                continue;
+            String key = first + word;
+            if(key.length() >= KEY_LENGTH) {
+                keys.add(key.substring(0, KEY_LENGTH));
+                continue;
+            }
+            keys.add(key);
+            if(elements > 1)
+                concatenations(dict, key, elements - 1, keys);
+        }
+    }
+}
@@ -0,0 +1,366 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A rainbow table of one salt: chains over a short keyspace (every string of 1 to <code>maxLength</code> chars of
+ * a charset) that alternate crypting a candidate with that salt and reducing the crypted block to another
+ * candidate, with a different reduction in every column of the chain. Only the start and end candidate of
+ * every chain is stored, so a table of a few megabytes covers most of a keyspace that brute force would
+ * crypt again in every audit, and a lookup costs about chainLength^2 / 2 crypts per hash.
+ *
+ * The table file is a header followed by <code>(end, start)</code> candidate indices sorted by end (chains
+ * merging into the same end are only kept once), and is memory-mapped for lookups. Tables are built per salt,
+ * in a directory of <code>salt-&lt;hex of the salt&gt;.rt</code> files (salts may hold a '/').
+ *
+ * @author Antonio
+ *
+ */
+public class RainbowTable {
+    private static final long MAGIC = 0x5241494e424f5731L; //"RAINBOW1"
+    private static final int HEADER_SIZE = 256;
+    private static final int ENTRY_SIZE = 16;
+    private static final int KEY_LENGTH = 8;
+
+    private final String salt;
+    private final int[] swaps;
+    private final char[] charset;
+    private final int maxLength;
+    private final int chainLength;
+    //the index of the first candidate of every length
+    private final long[] firstIndex;
+    private final long keyspace;
+    private MappedByteBuffer entries;
+    private long count;
+
+    private RainbowTable(String salt, String charset, int maxLength, int chainLength) {
+        if(charset.isEmpty() || charset.length() > HEADER_SIZE - 32 || maxLength < 1 || maxLength > KEY_LENGTH)
+            throw new IllegalArgumentException("Expected a charset of 1 to " + (HEADER_SIZE - 32)
+                    + " chars and a max length of 1 to " + KEY_LENGTH);
+        if(chainLength < 1)
+            throw new IllegalArgumentException("Expected a chain length of at least 1");
+        //the header stores a byte per char of the salt and the charset
+        if(salt.length() != 2 || !latin1(salt) || !latin1(charset))
+            throw new IllegalArgumentException("Expected a salt of 2 chars and a charset of Latin-1 (up to U+00FF) chars");
+        this.salt = salt;
+        this.swaps = jcrypt.saltSwaps(salt);
+        this.charset = charset.toCharArray();
+        this.maxLength = maxLength;
+        this.chainLength = chainLength;
+        this.firstIndex = new long[maxLength + 2];
+        long size = 1;
+        for(int length = 1; length <= maxLength + 1; length++) {
+            this.firstIndex[length] = length == 1 ? 0 : this.firstIndex[length - 1] + size;
+            if(length <= maxLength)
+                size = Math.multiplyExact(size, (long) this.charset.length);
+        }
+        this.keyspace = this.firstIndex[maxLength + 1];
+    }
+
+    private static boolean latin1(String s) {
+        for(int i = 0; i < s.length(); i++)
+            if(s.charAt(i) > 0xff)
+                return false;
+        return true;
+    }
+
+    /**
+     * @param tableDirectory the directory of the tables
+     * @param salt the salt
+     * @return the path of the table of the given salt
+     */
+    static Path tableFile(Path tableDirectory, String salt) {
+        StringBuilder sb = new StringBuilder("salt-");
+        for(char c : salt.toCharArray())
+            sb.append(String.format("%02x", (int) c));
+        return tableDirectory.resolve(sb.append(".rt").toString());
+    }
+
+    /**
+     * Opens a built table.
+     * @param file the table file
+     * @return the table
+     * @throws IOException if the table could not be read or is not a table
+     */
+    static RainbowTable open(Path file) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if(channel.size() < HEADER_SIZE || map.getLong(0) != MAGIC)
+                throw new IOException("Not a rainbow table: " + file);
+            char[] salt = {(char) map.get(24), (char) map.get(25)};
+            char[] charset = new char[map.getShort(26)];
+            for(int i = 0; i < charset.length; i++)
+                charset[i] = (char) (map.get(28 + i) & 0xff);
+            RainbowTable table = new RainbowTable(new String(salt), new String(charset), map.getInt(12), map.getInt(8));
+            table.entries = map;
+            table.count = map.getLong(16);
+            if(HEADER_SIZE + table.count * ENTRY_SIZE > channel.size())
+                throw new IOException("Truncated rainbow table: " + file);
+            return table;
+        }
+    }
+
+    /**
+     * Builds the table of the given salt.
+     * @param file the table file to write
+     * @param salt the salt
+     * @param charset the chars of the candidates
+     * @param maxLength the length of the longest candidates
+     * @param chainLength the number of crypts per chain
+     * @param chains the number of chains (capped to the size of the keyspace)
+     * @param threads the number of threads building chains
+     * @return the table
+     * @throws IOException if the table could not be written
+     */
+    static RainbowTable build(Path file, String salt, String charset, int maxLength, int chainLength, long chains,
+            int threads) throws IOException {
+        RainbowTable table = new RainbowTable(salt, charset, maxLength, chainLength);
+        int n = (int) Math.min(Math.min(chains, table.keyspace), (Integer.MAX_VALUE - HEADER_SIZE) / ENTRY_SIZE);
+        long[] starts = new long[n];
+        long[] ends = new long[n];
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        List<Callable<Object>> todo = new ArrayList<>();
+        int slice = (n + threads - 1) / threads;
+        for(int from = 0; from < n; from += slice) {
+            final int start = from;
+            final int end = Math.min(n, from + slice);
+            todo.add(Executors.callable(() -> {
+                Chain chain = table.new Chain();
+                for(int i = start; i < end; i++) {
+                    //spread the starts over the keyspace
+                    starts[i] = (long) ((double) i / n * table.keyspace);
+                    ends[i] = chain.walk(starts[i], 0, chainLength);
+                }
+            }));
+        }
+        try {
+            executorService.invokeAll(todo);
+        } catch (InterruptedException e) {
+            throw new IOException("Interrupted while building " + file);
+        } finally {
+            executorService.shutdown();
+        }
+
+        sort(ends, starts, 0, n - 1);
+        int unique = 0;
+        for(int i = 0; i < n; i++) {
+            if(unique > 0 && ends[unique - 1] == ends[i])
+                continue;
+            ends[unique] = ends[i];
+            starts[unique++] = starts[i];
+        }
+
+        Files.deleteIfExists(file);
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) unique * ENTRY_SIZE);
+            map.putInt(8, chainLength);
+            map.putInt(12, maxLength);
+            map.putLong(16, unique);
+            map.put(24, (byte) table.salt.charAt(0));
+            map.put(25, (byte) table.salt.charAt(1));
+            map.putShort(26, (short) charset.length());
+            for(int i = 0; i < charset.length(); i++)
+                map.put(28 + i, (byte) charset.charAt(i));
+            for(int i = 0; i < unique; i++) {
+                map.putLong(HEADER_SIZE + i * ENTRY_SIZE, ends[i]);
+                map.putLong(HEADER_SIZE + i * ENTRY_SIZE + 8, starts[i]);
+            }
+            //the magic goes last, a table whose build was cut off does not open
+            map.force();
+            map.putLong(0, MAGIC);
+            map.force();
+        }
+        return open(file);
+    }
+
+    //sorts the entries by end, moving the starts along
+    private static void sort(long[] ends, long[] starts, int low, int high) {
+        while(low < high) {
+            long pivot = ends[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while(i <= j) {
+                while(ends[i] < pivot)
+                    i++;
+                while(ends[j] > pivot)
+                    j--;
+                if(i <= j) {
+                    long t = ends[i]; ends[i] = ends[j]; ends[j] = t;
+                    t = starts[i]; starts[i] = starts[j]; starts[j] = t;
+                    i++;
+                    j--;
+                }
+            }
+            //recurse into the smaller half
+            if(j - low < high - i) {
+                sort(ends, starts, low, j);
+                low = i;
+            } else {
+                sort(ends, starts, i, high);
+                high = j;
+            }
+        }
+    }
+
+    String salt() {
+        return this.salt;
+    }
+
+    long chains() {
+        return this.count;
+    }
+
+    /**
+     * Looks up the candidate crypting to the given block.
+     * @param block the crypted block (see <code>jcrypt.decode</code>)
+     * @return the candidate, or <code>null</code> if it is not covered by the table
+     */
+    String lookup(int[] block) {
+        Chain chain = new Chain();
+        int[] out = new int[2];
+        for(int column = this.chainLength - 1; column >= 0; column--) {
+            //the end of the chain if the block was crypted in this column
+            long end = chain.walk(reduce(block[0], block[1], column), column + 1, this.chainLength);
+            long entry = find(end);
+            if(entry < 0)
+                continue;
+            long candidate = chain.walk(this.entries.getLong((int) (HEADER_SIZE + entry * ENTRY_SIZE + 8)), 0, column);
+            chain.crypt(candidate, out);
+            if(out[0] == block[0] && out[1] == block[1])
+                return chain.plaintext(candidate);
+            //a false alarm, another chain merged into this end
+        }
+        return null;
+    }
+
+    private long find(long end) {
+        long low = 0;
+        long high = this.count - 1;
+        while(low <= high) {
+            long mid = (low + high) >>> 1;
+            long value = this.entries.getLong((int) (HEADER_SIZE + mid * ENTRY_SIZE));
+            if(value < end)
+                low = mid + 1;
+            else if(value > end)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    //a different reduction in every column, so that chains only merge if they collide in the same column
+    private long reduce(int left, int right, int column) {
+        long h = ((long) left << 32 | (right & 0xffffffffL)) + column * 0x9e3779b97f4a7c15L;
+        h ^= h >>> 31;
+        h *= 0xbf58476d1ce4e5b9L;
+        h ^= h >>> 29;
+        return Long.remainderUnsigned(h, this.keyspace);
+    }
+
+    //the buffers of one thread
+    private class Chain {
+        private final byte[] key = new byte[KEY_LENGTH];
+        private final char[] chars = new char[KEY_LENGTH];
+        private final int[] out = new int[2];
+
+        //crypts and reduces from the given column up to (but not including) the last column
+        long walk(long candidate, int column, int last) {
+            for(; column < last; column++) {
+                crypt(candidate, this.out);
+                candidate = reduce(this.out[0], this.out[1], column);
+            }
+            return candidate;
+        }
+
+        void crypt(long candidate, int[] out) {
+            int length = fill(candidate);
+            for(int i = 0; i < KEY_LENGTH; i++)
+                this.key[i] = i < length ? (byte) (this.chars[i] << 1) : 0;
+            jcrypt.encrypt(jcrypt.keySchedule(this.key), swaps[0], swaps[1], out);
+        }
+
+        String plaintext(long candidate) {
+            return new String(this.chars, 0, fill(candidate));
+        }
+
+        private int fill(long candidate) {
+            int length = 1;
+            while(candidate >= firstIndex[length + 1])
+                length++;
+            candidate -= firstIndex[length];
+            for(int i = 0; i < length; i++) {
+                this.chars[i] = charset[(int) (candidate % charset.length)];
+                candidate /= charset.length;
+            }
+            return length;
+        }
+    }
+
+    /**
+     * Builds the tables of the given salts.
+     * @param args args[0]: the table directory. args[1]: the salts, comma separated, or @&lt;password file&gt;[:n]
+     * for the (n most frequent) salts of a password file. args[2]: the charset. args[3]: the max length of the
+     * candidates. args[4]: the chain length. args[5]: the number of chains per salt. args[6] (optional): the number
+     * of threads (default: the number of cores).
+     */
+    public static void main(String[] args) {
+        if(args.length != 6 && args.length != 7) {
+            System.out.println("Expects arguments in the form: <table directory> <salt,salt,...|@password file[:n]>"
+                    + " <charset> <max length> <chain length> <chains per salt> [threads]");
+            System.out.println("For example: tables @passwd:10 abcdefghijklmnopqrstuvwxyz0123456789 6 2000 1000000"
+                    + " builds the tables of the 10 most frequent salts of passwd.");
+            System.exit(0);
+        }
+        List<String> salts = new ArrayList<>();
+        if(args[1].startsWith("@")) {
+            String file = args[1].substring(1);
+            int limit = Integer.MAX_VALUE;
+            int colon = file.lastIndexOf(':');
+            if(colon > 0 && !Files.exists(Paths.get(file))) {
+                limit = Integer.parseInt(file.substring(colon + 1));
+                file = file.substring(0, colon);
+            }
+            Map<String, Integer> frequencies = new HashMap<>();
+            for(User user : PasswordCrack.readInUsers(file)) {
+                //the tables are of traditional crypt only
+                if(user.algorithm == User.DES)
+                    frequencies.merge(user.salt, 1, Integer::sum);
+            }
+            frequencies.entrySet().stream().sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                    .limit(limit).forEach(entry -> salts.add(entry.getKey()));
+        } else {
+            salts.addAll(Arrays.asList(args[1].split(",")));
+        }
+        int threads = args.length == 7 ? Integer.parseInt(args[6]) : Runtime.getRuntime().availableProcessors();
+        Path directory = Paths.get(args[0]);
+        try {
+            Files.createDirectories(directory);
+            for(String salt : salts) {
+                long start = System.currentTimeMillis();
+                RainbowTable table = build(tableFile(directory, salt), salt, args[2], Integer.parseInt(args[3]),
+                        Integer.parseInt(args[4]), Long.parseLong(args[5]), threads);
+                System.out.println("Built the table of salt " + salt + ": " + table.chains() + " chains of "
+                        + table.chainLength + " over " + table.keyspace + " candidates in "
+                        + (System.currentTimeMillis() - start) + " ms");
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Could not build the tables: " + e.getMessage());
+            System.out.println("Exiting...");
+        }
+        System.exit(0);
+    }
+}
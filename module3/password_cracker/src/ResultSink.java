@@ -0,0 +1,143 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Receives the cracks through a lock-free queue and writes them from its own thread, so the crackers never
+ * wait for the console or the disk. Every crack is printed (only the password, or
+ * <code>host:account:password</code> when cracking many password files) and, if a results file is given,
+ * written to it as a JSON line or a CSV row with the account, host, password, strategy, elapsed time and the
+ * number of candidates tried so far.
+ *
+ * @author Antonio
+ *
+ */
+class ResultSink {
+    static final String JSONL = "jsonl";
+    static final String CSV = "csv";
+
+    private final Queue<CrackEvent> queue = new ConcurrentLinkedQueue<>();
+    private final boolean batch;
+    private final String format;
+    private BufferedWriter writer;
+    private final Thread thread;
+    private volatile boolean closed = false;
+
+    /**
+     * Creates the sink and starts its writer thread.
+     * @param resultsFile the file to write the cracks to, or <code>null</code> to only print them
+     * @param format <code>JSONL</code> or <code>CSV</code>
+     * @param batch if the cracks should be printed with their host and account
+     * @throws IOException if the results file could not be opened
+     */
+    ResultSink(String resultsFile, String format, boolean batch) throws IOException {
+        this.batch = batch;
+        this.format = format;
+        if(resultsFile != null) {
+            this.writer = new BufferedWriter(new FileWriter(resultsFile, true));
+            if(CSV.equals(format) && new File(resultsFile).length() == 0)
+                this.writer.write("user,host,plaintext,strategy,elapsed_ms,candidates\n");
+        }
+        this.thread = new Thread(this::write, "result-sink");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Hands over a crack, never blocks.
+     * @param event the crack
+     */
+    void offer(CrackEvent event) {
+        this.queue.add(event);
+        LockSupport.unpark(this.thread);
+    }
+
+    private void write() {
+        while(true) {
+            boolean closing = this.closed;
+            CrackEvent event;
+            boolean wrote = false;
+            while((event = this.queue.poll()) != null) {
+                System.out.println(this.batch ? event.host + ":" + event.username + ":" + event.plaintext : event.plaintext);
+                if(this.writer != null)
+                    writeRecord(event);
+                wrote = true;
+            }
+            if(wrote)
+                flush();
+            if(closing)
+                return;
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+    }
+
+    private void writeRecord(CrackEvent event) {
+        try {
+            if(CSV.equals(this.format)) {
+                this.writer.write(csv(event.username) + "," + csv(event.host) + "," + csv(event.plaintext) + ","
+                        + csv(event.strategy) + "," + event.elapsedMillis + "," + event.candidates + "\n");
+            } else {
+                this.writer.write("{\"user\":" + json(event.username) + ",\"host\":" + json(event.host)
+                        + ",\"plaintext\":" + json(event.plaintext) + ",\"strategy\":" + json(event.strategy)
+                        + ",\"elapsed_ms\":" + event.elapsedMillis + ",\"candidates\":" + event.candidates + "}\n");
+            }
+        } catch (IOException e) {
+            System.out.println("Could not write to the results file (" + e.getMessage() + ")");
+        }
+    }
+
+    private void flush() {
+        System.out.flush();
+        if(this.writer == null)
+            return;
+        try {
+            this.writer.flush();
+        } catch (IOException e) {
+            System.out.println("Could not write to the results file (" + e.getMessage() + ")");
+        }
+    }
+
+    private static String csv(String value) {
+        if(value == null)
+            return "";
+        if(value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0)
+            return value;
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String json(String value) {
+        if(value == null)
+            return "null";
+        StringBuilder sb = new StringBuilder("\"");
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if(c == '"' || c == '\\')
+                sb.append('\\').append(c);
+            else if(c < 0x20)
+                sb.append(String.format("\\u%04x", (int) c));
+            else
+                sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Writes everything handed over so far and closes the results file.
+     */
+    void close() {
+        this.closed = true;
+        LockSupport.unpark(this.thread);
+        try {
+            this.thread.join();
+            if(this.writer != null)
+                this.writer.close();
+        } catch (InterruptedException | IOException e) {
+            System.out.println("Could not close the results file (" + e.getMessage() + ")");
+        }
+    }
+}
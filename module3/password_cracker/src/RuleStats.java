@@ -0,0 +1,158 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Counts, for every mangle and every chain of mangles (as run by <code>PasswordCrack.runStrategy</code>), the
+ * candidates generated, the candidates that are unique (by their first 8 chars, the only ones crypt uses) among
+ * the candidates of the same dictionary word, the crypts spent and the cracks found. The counters are
+ * <code>LongAdder</code>s, so the cracking threads do not contend on them.
+ *
+ * A chain is encoded as up to three 4-bit mangles, the first applied mangle in the lowest bits, see
+ * <code>chain</code>.
+ *
+ * @author Antonio
+ *
+ */
+class RuleStats {
+    static final int PREPEND = 13;
+    static final int APPEND = 14;
+    private static final int CHAINS = 1 << 12;
+    private static final int KEY_LENGTH = 8;
+    private static final String[] MANGLE_NAMES = {
+            "none", "deleteFirst", "deleteLast", "reverse", "duplicate", "reflect", "reflectFirstReverse",
+            "upperCase", "lowerCase", "capitalize", "nCapitalize", "toggleFirst", "toggleSecond", "prepend", "append"
+    };
+
+    private static class Counters {
+        final LongAdder generated = new LongAdder();
+        final LongAdder unique = new LongAdder();
+        final LongAdder crypts = new LongAdder();
+        final LongAdder cracks = new LongAdder();
+    }
+
+    private final Counters[] counters = new Counters[CHAINS];
+    private final IntSupplier salts;
+    private final ThreadLocal<Set<String>> seen = ThreadLocal.withInitial(HashSet::new);
+
+    /**
+     * Creates the statistics.
+     * @param salts the number of salts left, a candidate costs one crypt per salt
+     */
+    RuleStats(IntSupplier salts) {
+        this.salts = salts;
+    }
+
+    /**
+     * Encodes a chain of mangles.
+     * @param first the first applied mangle (1-14), or 0 for no mangle
+     * @param second the second applied mangle, or 0
+     * @param third the third applied mangle, or 0
+     * @return the chain
+     */
+    static int chain(int first, int second, int third) {
+        return first | second << 4 | third << 8;
+    }
+
+    private Counters counters(int chain) {
+        Counters c = this.counters[chain];
+        if(c != null)
+            return c;
+        synchronized (this) {
+            if(this.counters[chain] == null)
+                this.counters[chain] = new Counters();
+            return this.counters[chain];
+        }
+    }
+
+    /**
+     * Starts counting the candidates of a new dictionary word (on this thread).
+     */
+    void startWord() {
+        this.seen.get().clear();
+    }
+
+    /**
+     * Sets the word of this thread aside, to count the candidates of other words in the middle of it.
+     * @return the candidates seen of the word, for <code>resumeWord</code>
+     */
+    Set<String> suspendWord() {
+        Set<String> seen = this.seen.get();
+        this.seen.set(new HashSet<>());
+        return seen;
+    }
+
+    /**
+     * Continues counting the candidates of a word set aside on this thread.
+     * @param seen the candidates seen of the word, from <code>suspendWord</code>
+     */
+    void resumeWord(Set<String> seen) {
+        this.seen.set(seen);
+    }
+
+    /**
+     * Tests a candidate and counts it for the given chain.
+     * @param chain the chain that made the candidate
+     * @param word the candidate
+     * @param tester tests the candidate and returns the number of cracked users
+     * @return the number of cracked users
+     */
+    int test(int chain, String word, ToIntFunction<String> tester) {
+        Counters c = counters(chain);
+        c.generated.increment();
+        if(this.seen.get().add(word.length() > KEY_LENGTH ? word.substring(0, KEY_LENGTH) : word))
+            c.unique.increment();
+        c.crypts.add(this.salts.getAsInt());
+        int cracks = tester.applyAsInt(word);
+        if(cracks > 0)
+            c.cracks.add(cracks);
+        return cracks;
+    }
+
+    private static String name(int chain) {
+        StringBuilder sb = new StringBuilder(MANGLE_NAMES[chain & 0xf]);
+        for(chain >>>= 4; chain != 0; chain >>>= 4)
+            sb.append('>').append(MANGLE_NAMES[chain & 0xf]);
+        return sb.toString();
+    }
+
+    /**
+     * Prints the chains sorted by cracks (and then by crypts spent, cheapest first) and, if a file is given,
+     * writes the same report to it.
+     * @param file the file to write the report to, or <code>null</code>
+     */
+    void report(String file) {
+        List<Integer> chains = new ArrayList<>();
+        for(int chain = 0; chain < CHAINS; chain++)
+            if(this.counters[chain] != null)
+                chains.add(chain);
+        chains.sort((a, b) -> {
+            int byCracks = Long.compare(this.counters[b].cracks.sum(), this.counters[a].cracks.sum());
+            return byCracks != 0 ? byCracks : Long.compare(this.counters[a].crypts.sum(), this.counters[b].crypts.sum());
+        });
+
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("%-44s %12s %12s %14s %8s", "rule chain", "generated", "unique", "crypts", "cracks"));
+        for(int chain : chains) {
+            Counters c = this.counters[chain];
+            lines.add(String.format("%-44s %12d %12d %14d %8d", name(chain), c.generated.sum(), c.unique.sum(),
+                    c.crypts.sum(), c.cracks.sum()));
+        }
+        for(String line : lines)
+            System.out.println(line);
+        if(file == null)
+            return;
+        try (PrintWriter writer = new PrintWriter(file)) {
+            for(String line : lines)
+                writer.println(line);
+        } catch (IOException e) {
+            System.out.println("Could not write the rule statistics to: " + file + " (" + e.getMessage() + ")");
+        }
+    }
+}
@@ -0,0 +1,136 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The users left to crack, grouped by salt, so that a candidate only has to be crypted once per salt no
+ * matter how many users (from how many password files) share it.
+ *
+ * @author Antonio
+ *
+ */
+class TargetSet {
+
+    /**
+     * The users sharing a salt (and so the algorithm, see <code>User</code>).
+     */
+    static class SaltGroup {
+        final String salt;
+        final int algorithm;
+        //traditional crypt only, null for the others
+        final int[] swaps;
+        private final byte[] cryptSalt;
+        private final int rounds;
+        final List<User> users = new CopyOnWriteArrayList<>();
+
+        SaltGroup(User user) {
+            this.salt = user.salt;
+            this.algorithm = user.algorithm;
+            this.swaps = user.algorithm == User.DES ? jcrypt.saltSwaps(user.salt) : null;
+            this.cryptSalt = user.cryptSalt;
+            this.rounds = user.rounds;
+        }
+
+        /**
+         * Hashes the word once for all the users of the group.
+         * @param word the candidate
+         * @return the users the word cracks, <code>null</code> if none
+         */
+        List<User> crack(String word) {
+            List<User> cracked = null;
+            if(this.algorithm == User.DES) {
+                String encrypted = jcrypt.crypt(this.salt, word);
+                for(User user : this.users) {
+                    if(user.encryptedPasswordData.equals(encrypted)) {
+                        if(cracked == null)
+                            cracked = new ArrayList<>();
+                        cracked.add(user);
+                    }
+                }
+                return cracked;
+            }
+            byte[] digest = ModernCrypt.digest(this.algorithm, this.cryptSalt, this.rounds, word);
+            for(User user : this.users) {
+                if(Arrays.equals(user.digest, digest)) {
+                    if(cracked == null)
+                        cracked = new ArrayList<>();
+                    cracked.add(user);
+                }
+            }
+            return cracked;
+        }
+    }
+
+    private final Map<String, SaltGroup> groups = new ConcurrentHashMap<>();
+    private volatile int size = 0;
+
+    /**
+     * Creates a target set of the given users.
+     * @param users the users
+     */
+    TargetSet(List<User> users) {
+        //grouped first, so every group's users are added at once
+        Map<String, List<User>> bySalt = new LinkedHashMap<>();
+        for(User user : users)
+            bySalt.computeIfAbsent(user.salt, salt -> new ArrayList<>()).add(user);
+        for(List<User> group : bySalt.values()) {
+            this.groups.computeIfAbsent(group.get(0).salt, salt -> new SaltGroup(group.get(0))).users.addAll(group);
+            this.size += group.size();
+        }
+    }
+
+    synchronized void add(User user) {
+        this.groups.computeIfAbsent(user.salt, salt -> new SaltGroup(user)).users.add(user);
+        this.size++;
+    }
+
+    /**
+     * Removes the given user.
+     * @param user the user
+     * @return <code>true</code> if the user was removed by this call, <code>false</code> if it was already removed
+     */
+    synchronized boolean remove(User user) {
+        SaltGroup group = this.groups.get(user.salt);
+        if(group == null || !group.users.remove(user))
+            return false;
+        if(group.users.isEmpty())
+            this.groups.remove(user.salt);
+        this.size--;
+        return true;
+    }
+
+    boolean contains(User user) {
+        SaltGroup group = this.groups.get(user.salt);
+        return group != null && group.users.contains(user);
+    }
+
+    /**
+     * @return the salt groups left, safe to iterate while users are removed
+     */
+    Collection<SaltGroup> groups() {
+        return this.groups.values();
+    }
+
+    /**
+     * @return a snapshot of the users left
+     */
+    List<User> users() {
+        List<User> users = new ArrayList<>();
+        for(SaltGroup group : this.groups.values())
+            users.addAll(group.users);
+        return users;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    boolean isEmpty() {
+        return this.size == 0;
+    }
+}
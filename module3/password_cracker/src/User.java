@@ -0,0 +1,160 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A user (account) read from a password file in the form:
+ * account:encrypted password data:uid:gid:GCOS-field:homedir:shell
+ *
+ * The encrypted password data is traditional crypt (13 chars, 2 of them salt), MD5-crypt
+ * (<code>$1$salt$hash</code>) or SHA-512-crypt (<code>$6$[rounds=n$]salt$hash</code>). The salt is everything
+ * before the hash, so users with the same salt also have the same algorithm (and rounds).
+ *
+ * @author Antonio
+ *
+ */
+class User {
+    static final int DES = 0;
+    static final int MD5 = 1;
+    static final int SHA512 = 2;
+    
+    String username;
+    String fullName;
+    String firstName;
+    String lastName;
+    String middleName;
+    @SuppressWarnings("unused")
+    String password;
+    String salt;
+    String encryptedPasswordData;
+    String host;
+    int algorithm = DES;
+    //traditional crypt only
+    int[] encryptedBlock;
+    //MD5-crypt and SHA-512-crypt only
+    byte[] cryptSalt;
+    int rounds;
+    byte[] digest;
+    
+    /**
+     * Parses a line of a password file.
+     * @param userInfo the line
+     * @throws IllegalArgumentException if the line is malformed, with a message of what was expected
+     */
+    User (String userInfo){    
+        String[] info = fields(userInfo);
+        if(info == null) {
+            throw new IllegalArgumentException("Wrong format for user info!\n"
+                    + "Expected: account:encrypted password data:uid:gid:GCOS-field:homedir:shell\n"
+                    + "Received: " + userInfo);
+        }
+        
+        this.username = info[0];
+        
+        this.encryptedPasswordData = info[1];
+        parseEncryptedPasswordData();
+        
+        this.fullName = info[4];
+        
+        //an empty GCOS field or runs of spaces give no empty names
+        String trimmed = this.fullName.trim();
+        String[] names = trimmed.isEmpty() ? new String[0] : trimmed.split(" +");
+        this.firstName = names.length > 0 ? withoutPeriod(names[0]) : null;
+        this.middleName = names.length == 3 ? withoutPeriod(names[1]) : null;
+        if(names.length > 1)
+            this.lastName = names.length == 3 ? names[2] : names[1];
+        
+    }
+    
+    //the name without a trailing period (an initial), null if nothing is left
+    private static String withoutPeriod(String name) {
+        if(name.charAt(name.length() - 1) == '.')
+            name = name.substring(0, name.length() - 1);
+        return name.isEmpty() ? null : name;
+    }
+    
+    //the 7 fields of the line, null unless there are exactly 7 and the last is not empty (as split(":") would)
+    private static String[] fields(String userInfo) {
+        if(userInfo.isEmpty() || userInfo.charAt(userInfo.length() - 1) == ':')
+            return null;
+        String[] info = new String[7];
+        int start = 0;
+        for(int i = 0; i < 6; i++) {
+            int colon = userInfo.indexOf(':', start);
+            if(colon < 0)
+                return null;
+            info[i] = userInfo.substring(start, colon);
+            start = colon + 1;
+        }
+        if(userInfo.indexOf(':', start) >= 0)
+            return null;
+        info[6] = userInfo.substring(start);
+        return info;
+    }
+    
+    /**
+     * Creates a user without user info, only to crack.
+     * @param username the account
+     * @param encryptedPasswordData the encrypted password data
+     * @throws IllegalArgumentException if the encrypted password data is malformed
+     */
+    User(String username, String encryptedPasswordData) {
+        this.username = username;
+        this.encryptedPasswordData = encryptedPasswordData;
+        this.fullName = "";
+        parseEncryptedPasswordData();
+    }
+    
+    private void parseEncryptedPasswordData() {
+        if(this.encryptedPasswordData.startsWith("$1$") || this.encryptedPasswordData.startsWith("$6$")) {
+            parseModern();
+            return;
+        }
+        if(this.encryptedPasswordData.length() != 13) {
+            throw new IllegalArgumentException("Wrong format for encrypted password data!\n"
+                    + "Expected 13 characters (2 for salt and 11 for password encryption),"
+                    + " $1$salt$hash or $6$[rounds=n$]salt$hash.\n"
+                    + "Received: " + encryptedPasswordData + " for: " + username);
+        }
+        
+        this.salt = this.encryptedPasswordData.substring(0, 2);
+        this.password = this.encryptedPasswordData.substring(2);
+        this.encryptedBlock = jcrypt.decode(this.encryptedPasswordData);
+    }
+    
+    private void parseModern() {
+        String[] parts = this.encryptedPasswordData.split("\\$", -1);
+        boolean sha512 = parts[1].equals("6");
+        boolean hasRounds = sha512 && parts.length == 5 && parts[2].startsWith("rounds=");
+        if(parts.length != (hasRounds ? 5 : 4)) {
+            throw new IllegalArgumentException("Wrong format for encrypted password data!\n"
+                    + "Expected $1$salt$hash or $6$[rounds=n$]salt$hash.\n"
+                    + "Received: " + encryptedPasswordData + " for: " + username);
+        }
+        this.algorithm = sha512 ? SHA512 : MD5;
+        this.rounds = sha512 ? ModernCrypt.SHA512_DEFAULT_ROUNDS : ModernCrypt.MD5_ROUNDS;
+        if(hasRounds) {
+            try {
+                this.rounds = Integer.parseInt(parts[2].substring("rounds=".length()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Wrong rounds in: " + encryptedPasswordData + " for: " + username);
+            }
+            this.rounds = Math.max(ModernCrypt.SHA512_MIN_ROUNDS, Math.min(ModernCrypt.SHA512_MAX_ROUNDS, this.rounds));
+        }
+        String cryptSalt = parts[parts.length - 2];
+        this.password = parts[parts.length - 1];
+        this.salt = this.encryptedPasswordData.substring(0, this.encryptedPasswordData.length() - this.password.length());
+        int maxSalt = sha512 ? ModernCrypt.SHA512_MAX_SALT : ModernCrypt.MD5_MAX_SALT;
+        this.cryptSalt = cryptSalt.substring(0, Math.min(cryptSalt.length(), maxSalt)).getBytes(StandardCharsets.UTF_8);
+        this.digest = ModernCrypt.decode(this.password, this.algorithm);
+    }
+    
+    /**
+     * @param word the candidate
+     * @return if the word is the user's password
+     */
+    boolean crackedBy(String word) {
+        if(this.algorithm == DES)
+            return this.encryptedPasswordData.equals(jcrypt.crypt(this.salt, word));
+        return Arrays.equals(this.digest, ModernCrypt.digest(this.algorithm, this.cryptSalt, this.rounds, word));
+    }
+}
@@ -0,0 +1,131 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Parses a password file in parallel: the file is memory-mapped in chunks, and every chunk parses the lines that
+ * start in it on its own thread, straight from the mapped bytes into <code>User</code>s. The users come back in
+ * the order of the file. Malformed lines are skipped and counted instead of stopping the cracker, so one bad
+ * line in an export of millions of accounts does not lose the rest.
+ *
+ * @author Antonio
+ *
+ */
+class UserFileParser {
+    private static final long CHUNK_SIZE = 8 << 20;
+    //the longest line, a chunk maps this much past its end for its last line
+    private static final int MAX_LINE = 1 << 20;
+
+    /**
+     * The users of a file and its malformed lines.
+     */
+    static class Result {
+        final List<User> users = new ArrayList<>();
+        int skipped = 0;
+        //the message of the first malformed line
+        String firstError;
+
+        private void merge(Result chunk) {
+            this.users.addAll(chunk.users);
+            this.skipped += chunk.skipped;
+            if(this.firstError == null)
+                this.firstError = chunk.firstError;
+        }
+
+        private void skip(String error) {
+            this.skipped++;
+            if(this.firstError == null)
+                this.firstError = error;
+        }
+    }
+
+    /**
+     * Parses the given password file.
+     * @param file the password file
+     * @return the users and the malformed lines
+     * @throws IOException if the file could not be read
+     */
+    static Result parse(Path file) throws IOException {
+        Result result = new Result();
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<CompletableFuture<Result>> chunks = new ArrayList<>();
+            for(long start = 0; start < size; start += CHUNK_SIZE) {
+                final long from = start;
+                chunks.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return parseChunk(channel, from, Math.min(size, from + CHUNK_SIZE), size);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+            }
+            for(CompletableFuture<Result> chunk : chunks) {
+                try {
+                    result.merge(chunk.join());
+                } catch (CompletionException e) {
+                    if(e.getCause() instanceof UncheckedIOException)
+                        throw ((UncheckedIOException) e.getCause()).getCause();
+                    throw e;
+                }
+            }
+        }
+        return result;
+    }
+
+    //parses the lines that start in [start, end)
+    private static Result parseChunk(FileChannel channel, long start, long end, long size) throws IOException {
+        Result result = new Result();
+        //one byte before the chunk, to see if a line starts at its first byte
+        long from = Math.max(0, start - 1);
+        long to = Math.min(size, end + MAX_LINE);
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        ByteBuffer view = mapped.duplicate();
+        int limit = (int) (to - from);
+        int stop = (int) (end - from);
+        int position = (int) (start - from);
+        if(start > 0) {
+            while(position < limit && mapped.get(position - 1) != '\n')
+                position++;
+        }
+        byte[] line = new byte[256];
+        while(position < stop) {
+            int lineEnd = position;
+            while(lineEnd < limit && mapped.get(lineEnd) != '\n')
+                lineEnd++;
+            if(lineEnd == limit && to < size) {
+                result.skip("A line longer than " + MAX_LINE + " bytes");
+                break;
+            }
+            int length = lineEnd - position;
+            if(length > 0 && mapped.get(lineEnd - 1) == '\r')
+                length--;
+            if(line.length < length)
+                line = new byte[Math.max(length, line.length * 2)];
+            view.position(position);
+            view.get(line, 0, length);
+            position = lineEnd + 1;
+            if(length == 0)
+                continue;
+            String userInfo = new String(line, 0, length, StandardCharsets.UTF_8);
+            try {
+                result.users.add(new User(userInfo));
+            } catch (IllegalArgumentException e) {
+                result.skip(e.getMessage().replace('\n', ' '));
+            } catch (RuntimeException e) {
+                //any other failure on one line still only skips that line
+                result.skip("Could not parse: " + userInfo + " (" + e + ")");
+            }
+        }
+        return result;
+    }
+}
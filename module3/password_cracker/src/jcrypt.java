@@ -416,31 +416,48 @@ public class jcrypt
    {
       int schedule[] = new int[ITERATIONS * 2];
 
-      int c = fourBytesToInt(key, 0);
-      int d = fourBytesToInt(key, 4);
+      long packed = (fourBytesToInt(key, 0) & 0xffffffffL) |
+                    ((long)fourBytesToInt(key, 4) << 32);
 
-      int results[] = new int[2];
+      keySchedule(packed, schedule);
 
-      PERM_OP(d, c, 4, 0x0f0f0f0f, results);
-      d = results[0]; c = results[1];
+      return(schedule);
+   }
+
+   /*
+    * The same as keySchedule(byte[]), into the given schedule without
+    * allocating. Key byte i is packed in bits 8 * i to 8 * i + 7.
+    */
+   public static final void keySchedule(long key, int schedule[])
+   {
+      int c = (int)key;
+      int d = (int)(key >>> 32);
+      int t;
+
+      t = ((d >>> 4) ^ c) & 0x0f0f0f0f;           /* PERM_OP(d, c, 4, ...) */
+      d ^= t << 4;
+      c ^= t;
 
       c = HPERM_OP(c, -2, 0xcccc0000);
       d = HPERM_OP(d, -2, 0xcccc0000);
 
-      PERM_OP(d, c, 1, 0x55555555, results);
-      d = results[0]; c = results[1];
+      t = ((d >>> 1) ^ c) & 0x55555555;           /* PERM_OP(d, c, 1, ...) */
+      d ^= t << 1;
+      c ^= t;
 
-      PERM_OP(c, d, 8, 0x00ff00ff, results);
-      c = results[0]; d = results[1];
+      t = ((c >>> 8) ^ d) & 0x00ff00ff;           /* PERM_OP(c, d, 8, ...) */
+      c ^= t << 8;
+      d ^= t;
 
-      PERM_OP(d, c, 1, 0x55555555, results);
-      d = results[0]; c = results[1];
+      t = ((d >>> 1) ^ c) & 0x55555555;           /* PERM_OP(d, c, 1, ...) */
+      d ^= t << 1;
+      c ^= t;
 
       d = (((d & 0x000000ff) <<  16) |  (d & 0x0000ff00)     |
            ((d & 0x00ff0000) >>> 16) | ((c & 0xf0000000) >>> 4));
       c &= 0x0fffffff;
 
-      int s, t;
+      int s;
       int j = 0;
 
       for(int i = 0; i < ITERATIONS; i ++)
@@ -476,7 +493,6 @@ public class jcrypt
          s             = (s << 4) | (s >>> 28);
          schedule[j++] = s & 0xffffffff;
       }
-      return(schedule);
    }
 
    private static final int D_ENCRYPT
@@ -555,6 +571,246 @@ public class jcrypt
       return(out);
    }
 
+   /*
+    * Incremental crypt, for generators that change a few key bits at a time
+    * and test the same key against many salts. The key schedule is a pure
+    * bit selection of the key, so the schedule of (key ^ delta) is the
+    * schedule of key ^ the schedule of delta.
+    */
+
+   private static final int bit_schedules[][][] = new int[8][8][];
+
+   static
+   {
+      for(int i = 0; i < 8; i ++)
+      {
+         for(int j = 0; j < 8; j ++)
+         {
+            byte key[] = new byte[8];
+
+            key[i] = (byte)(1 << j);
+            bit_schedules[i][j] = des_set_key(key);
+         }
+      }
+   }
+
+   public static int [] keySchedule(byte key[])
+   {
+      return(des_set_key(key));
+   }
+
+   /*
+    * Updates the schedule of a key to the schedule of the key with the
+    * given bits of key byte i flipped.
+    */
+   public static final void flipKeyBits(int schedule[], int i, int bits)
+   {
+      for(int j = 0; bits != 0; j ++, bits >>>= 1)
+      {
+         if((bits & 1) != 0)
+         {
+            int bit_schedule[] = bit_schedules[i][j];
+
+            for(int k = 0; k < ITERATIONS * 2; k ++)
+               schedule[k] ^= bit_schedule[k];
+         }
+      }
+   }
+
+   public static int [] saltSwaps(String salt)
+   {
+      while(salt.length() < 2)
+         salt += "A";
+
+      int swaps[] = new int[2];
+
+      swaps[0] = con_salt[(int)salt.charAt(0)];
+      swaps[1] = con_salt[(int)salt.charAt(1)] << 4;
+
+      return(swaps);
+   }
+
+   public static final void encrypt
+   (
+      int schedule[], int Eswap0, int Eswap1, int out[]
+   )
+   {
+      int left = 0;
+      int right = 0;
+      int t     = 0;
+
+      for(int j = 0; j < 25; j ++)
+      {
+         for(int i = 0; i < ITERATIONS * 2; i += 4)
+         {
+            left  = D_ENCRYPT(left,  right, i,     Eswap0, Eswap1, schedule);
+            right = D_ENCRYPT(right, left,  i + 2, Eswap0, Eswap1, schedule);
+         }
+         t     = left; 
+         left  = right; 
+         right = t;
+      }
+
+      t = right;
+
+      right = (left >>> 1) | (left << 31);
+      left  = (t    >>> 1) | (t    << 31);
+
+      t = ((right >>> 1) ^ left) & 0x55555555;    /* PERM_OP(right, left, 1, ...) */
+      right ^= t << 1;
+      left  ^= t;
+
+      t = ((left >>> 8) ^ right) & 0x00ff00ff;    /* PERM_OP(left, right, 8, ...) */
+      left  ^= t << 8;
+      right ^= t;
+
+      t = ((right >>> 2) ^ left) & 0x33333333;    /* PERM_OP(right, left, 2, ...) */
+      right ^= t << 2;
+      left  ^= t;
+
+      t = ((left >>> 16) ^ right) & 0x0000ffff;   /* PERM_OP(left, right, 16, ...) */
+      left  ^= t << 16;
+      right ^= t;
+
+      t = ((right >>> 4) ^ left) & 0x0f0f0f0f;    /* PERM_OP(right, left, 4, ...) */
+      right ^= t << 4;
+      left  ^= t;
+
+      out[0] = left; out[1] = right;
+   }
+
+   /*
+    * LM hashes: one plain DES encryption (16 rounds, no salt) of the
+    * constant "KGS!@#$%" with a key of 7 chars. The initial permutation of
+    * the constant is the same for every key, so it is done once.
+    */
+
+   private static final int lm_block[] = new int[2];
+
+   static
+   {
+      byte constant[] = { 'K', 'G', 'S', '!', '@', '#', '$', '%' };
+      int results[] = new int[2];
+      int left  = fourBytesToInt(constant, 0);
+      int right = fourBytesToInt(constant, 4);
+
+      PERM_OP(right, left, 4, 0x0f0f0f0f, results);
+      right = results[0]; left = results[1];
+
+      PERM_OP(left, right, 16, 0x0000ffff, results);
+      left = results[0]; right = results[1];
+
+      PERM_OP(right, left, 2, 0x33333333, results);
+      right = results[0]; left = results[1];
+
+      PERM_OP(left, right, 8, 0x00ff00ff, results);
+      left = results[0]; right = results[1];
+
+      PERM_OP(right, left, 1, 0x55555555, results);
+      right = results[0]; left = results[1];
+
+      /* the halves swap, as in des_encrypt() of libdes */
+      lm_block[0] = (right << 1) | (right >>> 31);
+      lm_block[1] = (left  << 1) | (left  >>> 31);
+   }
+
+   /*
+    * Packs the (upper case) chars of an LM half into a key for
+    * keySchedule(long, int[]): the 56 bits of the 7 chars, 7 bits in the
+    * high bits of every key byte.
+    */
+   public static final long lmKey(char half[], int length)
+   {
+      long bits = 0;
+
+      for(int i = 0; i < 7; i ++)
+         bits = (bits << 8) | (i < length ? half[i] & 0xff : 0);
+
+      long key = 0;
+
+      for(int i = 0; i < 8; i ++)
+         key |= (((bits >>> (49 - 7 * i)) & 0x7f) << 1) << (8 * i);
+
+      return(key);
+   }
+
+   /*
+    * Encrypts the LM constant with the given key schedule. Returns the
+    * 8 bytes of the half hash, the first byte the most significant.
+    */
+   public static final long lmEncrypt(int schedule[])
+   {
+      int left  = lm_block[0];
+      int right = lm_block[1];
+      int t;
+
+      for(int i = 0; i < ITERATIONS * 2; i += 4)
+      {
+         left  = D_ENCRYPT(left,  right, i,     0, 0, schedule);
+         right = D_ENCRYPT(right, left,  i + 2, 0, 0, schedule);
+      }
+
+      left  = (left  >>> 1) | (left  << 31);
+      right = (right >>> 1) | (right << 31);
+
+      t = ((right >>> 1) ^ left) & 0x55555555;    /* PERM_OP(right, left, 1, ...) */
+      right ^= t << 1;
+      left  ^= t;
+
+      t = ((left >>> 8) ^ right) & 0x00ff00ff;    /* PERM_OP(left, right, 8, ...) */
+      left  ^= t << 8;
+      right ^= t;
+
+      t = ((right >>> 2) ^ left) & 0x33333333;    /* PERM_OP(right, left, 2, ...) */
+      right ^= t << 2;
+      left  ^= t;
+
+      t = ((left >>> 16) ^ right) & 0x0000ffff;   /* PERM_OP(left, right, 16, ...) */
+      left  ^= t << 16;
+      right ^= t;
+
+      t = ((right >>> 4) ^ left) & 0x0f0f0f0f;    /* PERM_OP(right, left, 4, ...) */
+      right ^= t << 4;
+      left  ^= t;
+
+      return(((long)Integer.reverseBytes(left) << 32) |
+             (Integer.reverseBytes(right) & 0xffffffffL));
+   }
+
+   public static int [] decode(String encrypted)
+   {
+      byte b[] = new byte[9];
+
+      for(int i = 2, y = 0, u = 0x80; i < 13; i ++)
+      {
+         int c = 0;
+
+         while(c < 64 && cov_2char[c] != (int)encrypted.charAt(i))
+            c ++;
+
+         for(int j = 5; j >= 0; j --)
+         {
+            if((c & (1 << j)) != 0)
+               b[y] |= (byte)u;
+
+            u >>>= 1;
+
+            if(u == 0)
+            {
+               y++;
+               u = 0x80;
+            }
+         }
+      }
+
+      int out[] = new int[2];
+
+      out[0] = fourBytesToInt(b, 0);
+      out[1] = fourBytesToInt(b, 4);
+
+      return(out);
+   }
+
    public static final String crypt(String salt, String original)
    {
       while(salt.length() < 2)